@@ -1,10 +1,8 @@
-import java.util.Comparator;
-
 /**
  * @author : Arkesh Rath
  * Custom comparator class to compare 2 words.
  */
-public class AlphaFreq implements Comparator<Word> {
+public class AlphaFreq implements PrefixComparator<Word> {
 
     /**
      * Compare 2 words based on their string value.
@@ -24,4 +22,15 @@ public class AlphaFreq implements Comparator<Word> {
 
         return alphaVal;
     }
+
+    /**
+     * Returns the key prefix of a word's string value, ties on it are broken by compare.
+     *
+     * @param word : Word to be summarized.
+     * @return : Key prefix of the word.
+     */
+    @Override
+    public long prefix(Word word) {
+        return PrefixComparator.pack(word.getWord(), false);
+    }
 }
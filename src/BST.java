@@ -1,6 +1,11 @@
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
 
 /**
  * @param <T>
@@ -15,6 +20,35 @@ import java.util.Stack;
  */
 
 public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T> {
+    /**
+     * How the tree keeps its shape as nodes are inserted.
+     */
+    public enum Balancing {
+        /**
+         * Nodes are inserted where the search for them ends, the shape depends on the insertion order.
+         */
+        NONE,
+        /**
+         * Subtree heights are kept within one of each other (AVL), so the height stays logarithmic.
+         */
+        AVL,
+        /**
+         * Every search and insert moves the node it reaches to the root (splay tree), so frequently
+         * accessed keys stay near the top. Searches modify the tree, so concurrent searches need locking.
+         */
+        SPLAY
+    }
+
+    /**
+     * Minimum height of both trees in a set operation for its halves to run in parallel.
+     */
+    private static final int PARALLEL_HEIGHT = 14;
+    /**
+     * Maximum height of a tree walked by a recursive operation. Splay trees, and trees without balancing
+     * built from sorted input, can degenerate into a path, so deeper trees are rebuilt balanced first.
+     */
+    private static final int MAX_RECURSION_HEIGHT = 1000;
+
     /**
      * Root of the BST.
      */
@@ -23,13 +57,31 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
      * Comparator which defines the natural order of the node's data.
      */
     private Comparator<T> comparator;
+    /**
+     * Comparator as a PrefixComparator, null if it is not one.
+     */
+    private PrefixComparator<T> prefixComparator;
+    /**
+     * How the tree keeps its shape.
+     */
+    private Balancing balancing;
+    /**
+     * Number of changes made to the set of nodes in the tree.
+     */
+    private int modificationCount;
 
     public BST() {
         this(null);
     }
 
     public BST(Comparator<T> comp) {
+        this(comp, Balancing.NONE);
+    }
+
+    public BST(Comparator<T> comp, Balancing balancing) {
         comparator = comp;
+        prefixComparator = comp instanceof PrefixComparator ? (PrefixComparator<T>) comp : null;
+        this.balancing = balancing;
         root = null;
     }
 
@@ -42,6 +94,26 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
         return comparator;
     }
 
+    /**
+     * Returns how the tree keeps its shape.
+     *
+     * @return : Balancing of the tree.
+     */
+    public Balancing balancing() {
+        return balancing;
+    }
+
+    /**
+     * Returns the number of changes made to the set of nodes in the tree, by inserts adding a node and
+     * by batch and set operations. Caches in front of the tree compare it to notice changes made
+     * without them.
+     *
+     * @return : Modification count of the tree.
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
     /**
      * Private helper method to compare 2 node's data.
      *
@@ -58,95 +130,101 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
     }
 
     /**
-     * Returns the root of the current BST.
+     * Private helper method to compare a node's data to a key, looking at their key prefixes first.
+     * Most nodes on a search path differ from the key within the prefix, which the node holds, so the
+     * comparator and the data it reads are only reached when the prefixes are equal.
      *
-     * @return : Node object which represents the root of the current tree.
+     * @param node      : Node to be compared.
+     * @param key       : Key to be compared.
+     * @param keyPrefix : Key prefix of the key.
+     * @return : An integer value with the sign of compare(node's data, key).
      */
-    public T getRoot() {
-        if (root == null) {
-            return null;
+    private int compare(Node<T> node, T key, long keyPrefix) {
+        if (node.prefix != keyPrefix) {
+            return Long.compareUnsigned(node.prefix, keyPrefix);
         }
-        return root.data;
+        return compare(node.data, key);
     }
 
-
     /**
-     * Recursive helper method to find height of the tree.
+     * Returns the key prefix of a datum, from the comparator if it is a PrefixComparator, or from the
+     * datum itself if the tree uses its natural order and it is a PrefixedKey. Otherwise all data have
+     * the prefix 0, and every comparison is left to the comparator.
      *
-     * @param current : Current node in the recursive call.
-     * @return : Height of the tree.
+     * @param data : Datum to be summarized.
+     * @return : Key prefix of the datum.
      */
-    private int getHeight(Node<T> current) {
-        /*
-        Base Case, when you hit a null or a leaf you have traversed till the end of that branch.
-        Hence we return 0.
-         */
-        if (current == null || (current.right == null && current.left == null)) {
-            return 0;
+    private long prefix(T data) {
+        if (prefixComparator != null) {
+            return prefixComparator.prefix(data);
         }
-
-        int lHeight = getHeight(current.left); // Recursive case, traverse left subtree.
-        int rHeight = getHeight(current.right); // Recursive case, traverse right subtree.
-
-        return Math.max(lHeight, rHeight) + 1;
+        if (comparator == null && data instanceof PrefixedKey) {
+            return ((PrefixedKey) data).keyPrefix();
+        }
+        return 0;
     }
 
     /**
-     * Method to find height of current BST.
+     * Returns the root of the current BST.
      *
-     * @return : An integer which is height of the BST.
+     * @return : Node object which represents the root of the current tree.
      */
-    public int getHeight() {
+    public T getRoot() {
         if (root == null) {
-            return 0;
+            return null;
         }
-        return getHeight(root);
+        return root.data;
     }
 
+
     /**
-     * Recursive helper method to find number of nodes in the tree.
+     * Method to find height of current BST, counting edges. Every node keeps the height of its subtree,
+     * so this does not walk the tree.
      *
-     * @param current : Current node in the recursive call.
-     * @return : Number of nodes in the tree.
+     * @return : An integer which is height of the BST.
      */
-    private int getNumberOfNodes(Node<T> current) {
-        /*
-        Base Case : When we hit a null we have finished traversing a branch.
-        Hence return 0 and continue processing of the other branches.
-         */
-        if (current == null) {
+    public int getHeight() {
+        if (root == null) {
             return 0;
         }
-        int numOfNodes = 0;
-        numOfNodes += 1;
-
-        numOfNodes += getNumberOfNodes(current.left); // Recursive Case : Count number of nodes in left subtree.
-        numOfNodes += getNumberOfNodes(current.right); // Recursive Case : Count number of nodes in right subtree.
-
-        return numOfNodes;
+        return root.height - 1;
     }
 
     /**
-     * Method to find number of nodes in current BST.
+     * Method to find number of nodes in current BST. Nodes are counted using a stack rather than
+     * recursion, since the tree can be too deep to recurse on.
      *
      * @return : An integer which is the number of nodes in the BST.
      */
     public int getNumberOfNodes() {
-        if (root == null) {
-            return 0;
+        int numOfNodes = 0;
+        Stack<Node<T>> nodes = new Stack<>();
+        if (root != null) {
+            nodes.push(root);
         }
 
-        return getNumberOfNodes(root);
+        while (!nodes.empty()) {
+            Node<T> current = nodes.pop();
+            numOfNodes++;
+            if (current.left != null) {
+                nodes.push(current.left);
+            }
+            if (current.right != null) {
+                nodes.push(current.right);
+            }
+        }
+        return numOfNodes;
     }
 
     /**
      * Private recursive helper method to search for an object in the BST.
      *
-     * @param current  : Current node in the recursive call.
-     * @param toSearch : Key to be searched for.
+     * @param current   : Current node in the recursive call.
+     * @param toSearch  : Key to be searched for.
+     * @param keyPrefix : Key prefix of the key.
      * @return : Data within node being searched for.
      */
-    private T search(Node<T> current, T toSearch) {
+    private T search(Node<T> current, T toSearch, long keyPrefix) {
         /*
         Base case, we have traversed till the end of a branch and not found the word, hence return null.
          */
@@ -154,24 +232,25 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
             return null;
         }
 
+        int comparison = compare(current, toSearch, keyPrefix);
         /*
         Base case, we have found the object we were looking for, hence return the object.
          */
-        if (compare(current.data, toSearch) == 0) {
+        if (comparison == 0) {
             return current.data;
         }
 
         /*
         Recursive case , if value of search object is lesser than current node, search in the left subtree.
          */
-        if (compare(current.data, toSearch) > 0) {
-            return search(current.left, toSearch);
+        if (comparison > 0) {
+            return search(current.left, toSearch, keyPrefix);
         }
 
         /*
         Recursive case, if value of search object is greater than current node, search in the right subtree.
          */
-        return search(current.right, toSearch);
+        return search(current.right, toSearch, keyPrefix);
     }
 
     /**
@@ -186,50 +265,62 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
             return null;
         }
 
-        return search(root, toSearch);
+        long keyPrefix = prefix(toSearch);
+        if (balancing == Balancing.SPLAY) {
+            root = splay(root, toSearch, keyPrefix);
+            return compare(root, toSearch, keyPrefix) == 0 ? root.data : null;
+        }
+
+        return search(root, toSearch, keyPrefix);
     }
 
     /**
      * Private recursive helper method to insert a new node in the BST.
      * After insertion, we return the root of the tree.
      *
-     * @param current  : Current node in the recursive call.
-     * @param toInsert : Node to be inserted.
+     * @param current   : Current node in the recursive call.
+     * @param toInsert  : Node to be inserted.
+     * @param keyPrefix : Key prefix of the data to be inserted.
      * @return : Root reference of the current tree..
      */
-    private Node<T> insert(Node<T> current, T toInsert) {
+    private Node<T> insert(Node<T> current, T toInsert, long keyPrefix) {
         /*
         Base case, we found a position currently not occupied in the tree, hence we instantiate a new node and return.
          */
         if (current == null) {
-            return new Node<>(toInsert);
+            modificationCount++;
+            return new Node<>(toInsert, keyPrefix);
         }
 
+        int comparison = compare(current, toInsert, keyPrefix);
         /*
         Base case, we find insertion node is already present in the tree, we return the node itself.
          */
-        if (compare(current.data, toInsert) == 0) {
+        if (comparison == 0) {
             return current;
         }
 
-        if (compare(current.data, toInsert) > 0) {
+        if (comparison > 0) {
             /*
             Recursive case, value of insert data is lesser than current node, find insertion position in the
             left subtree and update current's left subtree.
              */
-            current.left = insert(current.left, toInsert);
+            current.left = insert(current.left, toInsert, keyPrefix);
         } else {
             /*
             Recursive case, value of insert data is greater than current node, find insertion position in the
             right subtree and update current's right subtree.
              */
-            current.right = insert(current.right, toInsert);
+            current.right = insert(current.right, toInsert, keyPrefix);
         }
 
+        if (balancing == Balancing.AVL) {
+            return balance(current);
+        }
+        update(current);
         return current;
     }
 
-
     /**
      * Inserts a node in the BST.
      *
@@ -237,11 +328,773 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
      */
     @Override
     public void insert(T toInsert) {
+        long keyPrefix = prefix(toInsert);
         if (root == null) {
-            root = new Node<>(toInsert);
+            root = new Node<>(toInsert, keyPrefix);
+            modificationCount++;
+        }
+
+        if (balancing == Balancing.SPLAY) {
+            root = splayInsert(root, toInsert, keyPrefix);
+            return;
+        }
+
+        root = insert(root, toInsert, keyPrefix);
+    }
+
+    /**
+     * Private helper method to move the node of a key, or the last node on the search path for it, to the
+     * root of a subtree (top-down splay). Walking down from the root, nodes smaller than the key are linked
+     * into a left tree and greater ones into a right tree, rotating first whenever two steps go the same
+     * way, which roughly halves the depth of every node on the path. The node reached becomes the root, with
+     * the two trees as its subtrees. Splay trees can degenerate into a path, so this does not recurse.
+     *
+     * @param current   : Root of the subtree.
+     * @param key       : Key being accessed.
+     * @param keyPrefix : Key prefix of the key.
+     * @return : New root of the subtree.
+     */
+    private Node<T> splay(Node<T> current, T key, long keyPrefix) {
+        if (current == null) {
+            return null;
+        }
+
+        /*
+        The header's right child is the root of the left tree, and its left child the root of the right tree.
+         */
+        Node<T> header = new Node<>(null, 0);
+        Node<T> leftMax = header;
+        Node<T> rightMin = header;
+
+        int comparison = compare(current, key, keyPrefix);
+        while (comparison != 0) {
+            if (comparison > 0) {
+                if (current.left == null) {
+                    break;
+                }
+                int childComparison = compare(current.left, key, keyPrefix);
+                if (childComparison > 0) {
+                    /*
+                    Zig-zig: the key is left of the left child, rotate right before linking.
+                     */
+                    current = rotateRight(current);
+                    if (current.left == null) {
+                        break;
+                    }
+                }
+                /*
+                Current node and its right subtree are greater than the key, link them into the right tree.
+                 */
+                rightMin.left = current;
+                rightMin = current;
+                current = current.left;
+                /*
+                After a rotation the node reached is a grandchild, which was not compared yet.
+                 */
+                comparison = childComparison > 0 ? compare(current, key, keyPrefix) : childComparison;
+            } else {
+                if (current.right == null) {
+                    break;
+                }
+                int childComparison = compare(current.right, key, keyPrefix);
+                if (childComparison < 0) {
+                    /*
+                    Zag-zag: the key is right of the right child, rotate left before linking.
+                     */
+                    current = rotateLeft(current);
+                    if (current.right == null) {
+                        break;
+                    }
+                }
+                /*
+                Current node and its left subtree are smaller than the key, link them into the left tree.
+                 */
+                leftMax.right = current;
+                leftMax = current;
+                current = current.right;
+                comparison = childComparison < 0 ? compare(current, key, keyPrefix) : childComparison;
+            }
+        }
+
+        leftMax.right = current.left;
+        rightMin.left = current.right;
+        current.left = header.right;
+        current.right = header.left;
+
+        /*
+        Heights along the linked spines changed, update them from the deepest node up.
+         */
+        if (leftMax != header) {
+            updateRightSpine(current.left, leftMax);
+        }
+        if (rightMin != header) {
+            updateLeftSpine(current.right, rightMin);
+        }
+        update(current);
+        return current;
+    }
+
+    /**
+     * Recomputes the heights of the nodes on a path of right children, from the bottom up. The path is walked
+     * down reversing its links and walked back up restoring them, so no stack is needed.
+     *
+     * @param top    : First node of the path.
+     * @param bottom : Last node of the path.
+     */
+    private static <T> void updateRightSpine(Node<T> top, Node<T> bottom) {
+        Node<T> parent = null;
+        Node<T> node = top;
+        while (node != bottom) {
+            Node<T> next = node.right;
+            node.right = parent;
+            parent = node;
+            node = next;
+        }
+
+        update(bottom);
+        while (parent != null) {
+            Node<T> grandParent = parent.right;
+            parent.right = node;
+            update(parent);
+            node = parent;
+            parent = grandParent;
+        }
+    }
+
+    /**
+     * Recomputes the heights of the nodes on a path of left children, from the bottom up. The path is walked
+     * down reversing its links and walked back up restoring them, so no stack is needed.
+     *
+     * @param top    : First node of the path.
+     * @param bottom : Last node of the path.
+     */
+    private static <T> void updateLeftSpine(Node<T> top, Node<T> bottom) {
+        Node<T> parent = null;
+        Node<T> node = top;
+        while (node != bottom) {
+            Node<T> next = node.left;
+            node.left = parent;
+            parent = node;
+            node = next;
+        }
+
+        update(bottom);
+        while (parent != null) {
+            Node<T> grandParent = parent.left;
+            parent.left = node;
+            update(parent);
+            node = parent;
+            parent = grandParent;
+        }
+    }
+
+    /**
+     * Private helper method to insert in a splay tree. The closest node to the new key is splayed to the
+     * root, and the new node takes its place, with the old root on one side.
+     *
+     * @param current   : Root of the tree.
+     * @param toInsert  : Data to be inserted.
+     * @param keyPrefix : Key prefix of the data to be inserted.
+     * @return : New root of the tree.
+     */
+    private Node<T> splayInsert(Node<T> current, T toInsert, long keyPrefix) {
+        current = splay(current, toInsert, keyPrefix);
+        int comparison = compare(current, toInsert, keyPrefix);
+        if (comparison == 0) {
+            return current;
+        }
+
+        modificationCount++;
+        Node<T> inserted;
+        if (comparison > 0) {
+            inserted = new Node<>(toInsert, keyPrefix, current.left, current);
+            current.left = null;
+        } else {
+            inserted = new Node<>(toInsert, keyPrefix, current, current.right);
+            current.right = null;
+        }
+        update(current);
+        update(inserted);
+        return inserted;
+    }
+
+    /**
+     * Returns height of a subtree, counting nodes, 0 for an empty one.
+     *
+     * @param node : Root of the subtree.
+     * @return : Height of the subtree.
+     */
+    private static <T> int height(Node<T> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Recomputes the height of a node from its children.
+     *
+     * @param node : Node to be updated.
+     */
+    private static <T> void update(Node<T> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    /**
+     * Rotates a subtree to the left, its right child becoming its root.
+     *
+     * @param node : Root of the subtree.
+     * @return : New root of the subtree.
+     */
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Rotates a subtree to the right, its left child becoming its root.
+     *
+     * @param node : Root of the subtree.
+     * @return : New root of the subtree.
+     */
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    /**
+     * Restores the AVL property at a node whose subtrees differ in height by at most 2.
+     *
+     * @param node : Root of the subtree.
+     * @return : New root of the subtree.
+     */
+    private static <T> Node<T> balance(Node<T> node) {
+        update(node);
+        int difference = height(node.left) - height(node.right);
+
+        if (difference > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (difference < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * Joins two subtrees and a middle node, all keys of left being smaller than the middle's and all keys
+     * of right greater. Walks down the spine of the taller subtree and rebalances on the way back, so it
+     * runs in time proportional to the difference in heights. The difference is not bounded for trees which
+     * are not balanced, so this does not recurse.
+     *
+     * @param left   : Subtree of smaller keys.
+     * @param middle : Node holding the middle key.
+     * @param right  : Subtree of greater keys.
+     * @return : Root of the joined tree.
+     */
+    private static <T> Node<T> join(Node<T> left, Node<T> middle, Node<T> right) {
+        /*
+        Links walked are reversed, so no stack is needed: nodes of the left subtree keep the node walked
+        before them in their right child, and nodes of the right subtree in their left child.
+         */
+        Node<T> leftPath = null;
+        Node<T> rightPath = null;
+        while (true) {
+            if (height(left) > height(right) + 1) {
+                Node<T> next = left.right;
+                left.right = leftPath;
+                leftPath = left;
+                left = next;
+            } else if (height(right) > height(left) + 1) {
+                Node<T> next = right.left;
+                right.left = rightPath;
+                rightPath = right;
+                right = next;
+            } else {
+                break;
+            }
         }
 
-        root = insert(root, toInsert);
+        middle.left = left;
+        middle.right = right;
+        update(middle);
+
+        /*
+        Every node walked is shorter than the nodes walked before it, so the way back up takes the shorter of
+        the two paths' last nodes, and gives it the joined tree in place of the child it was left by.
+         */
+        Node<T> joined = middle;
+        while (leftPath != null || rightPath != null) {
+            if (rightPath == null || (leftPath != null && leftPath.height < rightPath.height)) {
+                Node<T> next = leftPath.right;
+                leftPath.right = joined;
+                joined = balance(leftPath);
+                leftPath = next;
+            } else {
+                Node<T> next = rightPath.left;
+                rightPath.left = joined;
+                joined = balance(rightPath);
+                rightPath = next;
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Joins two subtrees, all keys of left being smaller than those of right.
+     *
+     * @param left  : Subtree of smaller keys.
+     * @param right : Subtree of greater keys.
+     * @return : Root of the joined tree.
+     */
+    private static <T> Node<T> join(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        Node<T>[] lastAndRest = removeLast(left);
+        return join(lastAndRest[1], lastAndRest[0], right);
+    }
+
+    /**
+     * Removes the node of the greatest key from a subtree.
+     *
+     * @param node : Root of the subtree, not empty.
+     * @return : The removed node, and the root of what is left of the subtree.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Node<T>[] removeLast(Node<T> node) {
+        /*
+        Walk down the right spine, each node keeping the one above it in its right child.
+         */
+        Node<T> path = null;
+        while (node.right != null) {
+            Node<T> next = node.right;
+            node.right = path;
+            path = node;
+            node = next;
+        }
+
+        /*
+        Rejoin the nodes on the way back up, each with its left subtree and what is left below it.
+         */
+        Node<T> rest = node.left;
+        while (path != null) {
+            Node<T> next = path.right;
+            rest = join(path.left, path, rest);
+            path = next;
+        }
+        return new Node[]{node, rest};
+    }
+
+    /**
+     * Splits a subtree around a key. The subtree can be too deep to recurse on, so the search path is kept
+     * by reversing its links instead.
+     *
+     * @param node      : Root of the subtree.
+     * @param key       : Key to split around.
+     * @param keyPrefix : Key prefix of the key.
+     * @return : Subtree of smaller keys, node holding the key or null, and subtree of greater keys.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<T>[] split(Node<T> node, T key, long keyPrefix) {
+        /*
+        Last nodes on the path greater and smaller than the key. A greater node keeps the greater node above it
+        in its left child, which the split replaces anyway, and a smaller node keeps the one above it in its
+        right child.
+         */
+        Node<T> greater = null;
+        Node<T> smaller = null;
+        Node<T>[] parts;
+        while (true) {
+            /*
+            An empty subtree splits into nothing.
+             */
+            if (node == null) {
+                parts = new Node[]{null, null, null};
+                break;
+            }
+
+            int comparison = compare(node, key, keyPrefix);
+            /*
+            The key is at this node, its subtrees are the two halves.
+             */
+            if (comparison == 0) {
+                parts = new Node[]{node.left, node, node.right};
+                break;
+            }
+
+            if (comparison > 0) {
+                Node<T> next = node.left;
+                node.left = greater;
+                greater = node;
+                node = next;
+            } else {
+                Node<T> next = node.right;
+                node.right = smaller;
+                smaller = node;
+                node = next;
+            }
+        }
+
+        /*
+        On the way back up, what is greater than the key is joined to each greater node and its right subtree,
+        and what is smaller to each smaller node and its left subtree. The two sides do not share nodes.
+         */
+        while (greater != null) {
+            Node<T> next = greater.left;
+            parts[2] = join(parts[2], greater, greater.right);
+            greater = next;
+        }
+        while (smaller != null) {
+            Node<T> next = smaller.right;
+            parts[0] = join(smaller.left, smaller, parts[0]);
+            smaller = next;
+        }
+        return parts;
+    }
+
+    /**
+     * Private helper method to rebuild a subtree balanced from its own nodes if it is too deep for the
+     * recursive operations to walk. The nodes are listed in order using a stack.
+     *
+     * @param node : Root of the subtree.
+     * @return : Root of the subtree, rebuilt if it was too deep.
+     */
+    private static <T> Node<T> rebalanceIfDeep(Node<T> node) {
+        if (height(node) <= MAX_RECURSION_HEIGHT) {
+            return node;
+        }
+
+        ArrayList<Node<T>> nodes = new ArrayList<>();
+        Stack<Node<T>> stack = new Stack<>();
+        Node<T> current = node;
+        while (current != null || !stack.empty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            current = stack.pop();
+            nodes.add(current);
+            current = current.right;
+        }
+        return relink(nodes, 0, nodes.size());
+    }
+
+    /**
+     * Private recursive helper method to link a sorted range of nodes into a balanced subtree.
+     *
+     * @param nodes : Nodes sorted in the tree's order.
+     * @param low   : First index of the range.
+     * @param high  : Index after the last one of the range.
+     * @return : Root of the subtree.
+     */
+    private static <T> Node<T> relink(List<Node<T>> nodes, int low, int high) {
+        /*
+        Base case, the range is empty.
+         */
+        if (low >= high) {
+            return null;
+        }
+
+        int middle = (low + high) >>> 1;
+        Node<T> node = nodes.get(middle);
+        node.left = relink(nodes, low, middle); // Recursive case, link the left half.
+        node.right = relink(nodes, middle + 1, high); // Recursive case, link the right half.
+        update(node);
+        return node;
+    }
+
+    /**
+     * Private recursive helper method for union.
+     *
+     * @param current : Root of a subtree of this tree.
+     * @param other   : Root of a subtree of the other tree.
+     * @param combine : Function combining the data of equal keys.
+     * @return : Root of the union.
+     */
+    private Node<T> union(Node<T> current, Node<T> other, BinaryOperator<T> combine) {
+        if (current == null) {
+            return other;
+        }
+        if (other == null) {
+            return current;
+        }
+
+        Node<T>[] parts = split(other, current.data, current.prefix);
+        if (parts[1] != null) {
+            current.data = combine.apply(current.data, parts[1].data);
+            current.prefix = prefix(current.data);
+        }
+
+        Node<T> leftUnion;
+        Node<T> rightUnion;
+        if (height(current) >= PARALLEL_HEIGHT && height(other) >= PARALLEL_HEIGHT) {
+            ForkJoinTask<Node<T>> leftTask = ForkJoinTask.adapt(() -> union(current.left, parts[0], combine)).fork();
+            rightUnion = union(current.right, parts[2], combine);
+            leftUnion = leftTask.join();
+        } else {
+            leftUnion = union(current.left, parts[0], combine);
+            rightUnion = union(current.right, parts[2], combine);
+        }
+        return join(leftUnion, current, rightUnion);
+    }
+
+    /**
+     * Private recursive helper method for intersection.
+     *
+     * @param current : Root of a subtree of this tree.
+     * @param other   : Root of a subtree of the other tree.
+     * @param combine : Function combining the data of equal keys.
+     * @return : Root of the intersection.
+     */
+    private Node<T> intersection(Node<T> current, Node<T> other, BinaryOperator<T> combine) {
+        if (current == null || other == null) {
+            return null;
+        }
+
+        Node<T>[] parts = split(other, current.data, current.prefix);
+
+        Node<T> leftIntersection;
+        Node<T> rightIntersection;
+        if (height(current) >= PARALLEL_HEIGHT && height(other) >= PARALLEL_HEIGHT) {
+            ForkJoinTask<Node<T>> leftTask = ForkJoinTask.adapt(() ->
+                    intersection(current.left, parts[0], combine)).fork();
+            rightIntersection = intersection(current.right, parts[2], combine);
+            leftIntersection = leftTask.join();
+        } else {
+            leftIntersection = intersection(current.left, parts[0], combine);
+            rightIntersection = intersection(current.right, parts[2], combine);
+        }
+
+        if (parts[1] == null) {
+            return join(leftIntersection, rightIntersection);
+        }
+        current.data = combine.apply(current.data, parts[1].data);
+        current.prefix = prefix(current.data);
+        return join(leftIntersection, current, rightIntersection);
+    }
+
+    /**
+     * Private recursive helper method for difference.
+     *
+     * @param current : Root of a subtree of this tree.
+     * @param other   : Root of a subtree of the other tree.
+     * @return : Root of the difference.
+     */
+    private Node<T> difference(Node<T> current, Node<T> other) {
+        if (current == null || other == null) {
+            return current;
+        }
+
+        Node<T>[] parts = split(current, other.data, other.prefix);
+
+        Node<T> leftDifference;
+        Node<T> rightDifference;
+        if (height(current) >= PARALLEL_HEIGHT && height(other) >= PARALLEL_HEIGHT) {
+            ForkJoinTask<Node<T>> leftTask = ForkJoinTask.adapt(() -> difference(parts[0], other.left)).fork();
+            rightDifference = difference(parts[2], other.right);
+            leftDifference = leftTask.join();
+        } else {
+            leftDifference = difference(parts[0], other.left);
+            rightDifference = difference(parts[2], other.right);
+        }
+        return join(leftDifference, rightDifference);
+    }
+
+    /**
+     * Checks that another tree is not this one and uses the same order, since combining a tree with itself
+     * would empty or corrupt it.
+     *
+     * @param other : Tree to be checked.
+     */
+    private void checkSameOrder(BST<T> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot combine a tree with itself");
+        }
+        boolean same = comparator == null ? other.comparator == null
+                : other.comparator != null && comparator.getClass() == other.comparator.getClass();
+        if (!same) {
+            throw new IllegalArgumentException("Trees are ordered by different comparators");
+        }
+    }
+
+    /**
+     * Adds every node of another tree to this one. Nodes whose keys are in both trees are kept once,
+     * holding combine(this tree's data, other tree's data). The nodes of the other tree are moved, so it
+     * is left empty. Runs in O(m log(n / m + 1)) for balanced trees of sizes m and n, m the smaller, and
+     * splits the work across the fork-join pool for large trees.
+     *
+     * @param other   : Another tree using the same order, emptied by the operation.
+     * @param combine : Function combining the data of equal keys, which has to keep the key's order.
+     */
+    public void union(BST<T> other, BinaryOperator<T> combine) {
+        checkSameOrder(other);
+        root = union(rebalanceIfDeep(root), other.root, combine);
+        other.root = null;
+        modificationCount++;
+        other.modificationCount++;
+    }
+
+    /**
+     * Keeps only the nodes of this tree whose keys are also in another tree, holding
+     * combine(this tree's data, other tree's data). The other tree is left empty.
+     *
+     * @param other   : Another tree using the same order, emptied by the operation.
+     * @param combine : Function combining the data of equal keys, which has to keep the key's order.
+     */
+    public void intersection(BST<T> other, BinaryOperator<T> combine) {
+        checkSameOrder(other);
+        root = intersection(rebalanceIfDeep(root), other.root, combine);
+        other.root = null;
+        modificationCount++;
+        other.modificationCount++;
+    }
+
+    /**
+     * Removes from this tree every node whose key is in another tree. The other tree keeps its keys,
+     * though it is rebuilt balanced if it is too deep to walk recursively.
+     *
+     * @param other : Another tree using the same order.
+     */
+    public void difference(BST<T> other) {
+        checkSameOrder(other);
+        other.root = rebalanceIfDeep(other.root);
+        root = difference(root, other.root);
+        modificationCount++;
+    }
+
+    /**
+     * Splits the tree around a key. This tree keeps the keys smaller than the given one, and the returned
+     * tree, with the same order and balancing, holds the key itself if present and all greater keys.
+     *
+     * @param key : Key to split around.
+     * @return : Tree of the keys greater than or equal to key.
+     */
+    public BST<T> split(T key) {
+        Node<T>[] parts = split(root, key, prefix(key));
+        BST<T> greater = new BST<>(comparator, balancing);
+        root = parts[0];
+        modificationCount++;
+        greater.root = parts[1] == null ? parts[2] : join(null, parts[1], parts[2]);
+        return greater;
+    }
+
+    /**
+     * Private recursive helper method to build a balanced subtree from a sorted range.
+     *
+     * @param sorted : Data sorted in the tree's order, without duplicates.
+     * @param low    : First index of the range.
+     * @param high   : Index after the last one of the range.
+     * @return : Root of the subtree.
+     */
+    private Node<T> build(List<T> sorted, int low, int high) {
+        /*
+        Base case, the range is empty.
+         */
+        if (low >= high) {
+            return null;
+        }
+
+        int middle = (low + high) >>> 1;
+        Node<T> left = build(sorted, low, middle); // Recursive case, build from the left half.
+        Node<T> right = build(sorted, middle + 1, high); // Recursive case, build from the right half.
+        return new Node<>(sorted.get(middle), prefix(sorted.get(middle)), left, right);
+    }
+
+    /**
+     * Private recursive helper method to insert a sorted range of data in one descent. The range is split
+     * around each node on the way down, so every node is visited at most once for the whole batch, and a
+     * range reaching an empty subtree is placed there as a balanced subtree.
+     *
+     * @param current : Current node in the recursive call.
+     * @param sorted  : Data sorted in the tree's order, without duplicates.
+     * @param low     : First index of the range.
+     * @param high    : Index after the last one of the range.
+     * @return : Root reference of the current tree.
+     */
+    private Node<T> insertAll(Node<T> current, List<T> sorted, int low, int high) {
+        /*
+        Base case, nothing is left to insert in this subtree.
+         */
+        if (low >= high) {
+            return current;
+        }
+
+        /*
+        Base case, the whole range goes in an empty subtree.
+         */
+        if (current == null) {
+            return build(sorted, low, high);
+        }
+
+        /*
+        Binary search for the first datum not smaller than the current node, it starts the right part of the
+        range, after skipping a datum equal to the current node, which is already in the tree.
+         */
+        int lessEnd = low;
+        int searchHigh = high;
+        while (lessEnd < searchHigh) {
+            int middle = (lessEnd + searchHigh) >>> 1;
+            if (compare(current.data, sorted.get(middle)) > 0) {
+                lessEnd = middle + 1;
+            } else {
+                searchHigh = middle;
+            }
+        }
+        int greaterStart = lessEnd;
+        if (greaterStart < high && compare(current.data, sorted.get(greaterStart)) == 0) {
+            greaterStart++;
+        }
+
+        current.left = insertAll(current.left, sorted, low, lessEnd); // Recursive case, smaller data.
+        current.right = insertAll(current.right, sorted, greaterStart, high); // Recursive case, greater data.
+        update(current);
+        return current;
+    }
+
+    /**
+     * Inserts a batch of nodes in the BST. The batch is sorted by the tree's order, which takes linear time
+     * for sorted input, and inserted in a single descent instead of one descent per datum. AVL trees merge
+     * the batch in as a balanced tree with a union. As with insert, data equal to a node already in the tree,
+     * or to an earlier datum of the batch, is not inserted.
+     *
+     * @param batch : Data to be inserted.
+     */
+    public void insertAll(Collection<T> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+
+        ArrayList<T> sorted = new ArrayList<>(batch);
+        sorted.sort(this::compare);
+
+        /*
+        Sorting is stable, so keeping the first of equal data keeps the one inserted first.
+         */
+        int distinct = 1;
+        for (int i = 1; i < sorted.size(); i++) {
+            if (compare(sorted.get(distinct - 1), sorted.get(i)) != 0) {
+                sorted.set(distinct++, sorted.get(i));
+            }
+        }
+
+        if (balancing == Balancing.AVL) {
+            root = union(root, build(sorted, 0, distinct), (existing, inserted) -> existing);
+        } else {
+            root = insertAll(rebalanceIfDeep(root), sorted, 0, distinct);
+        }
+        modificationCount++;
     }
 
     /**
@@ -325,15 +1178,25 @@ public class BST<T extends Comparable<T>> implements Iterable<T>, BSTInterface<T
          * Right pointer of node.
          */
         private Node<T> right;
+        /**
+         * Height of the subtree rooted at this node, counting nodes.
+         */
+        private int height;
+        /**
+         * Key prefix of the data held in node.
+         */
+        private long prefix;
 
-        Node(T d) {
-            this(d, null, null);
+        Node(T d, long p) {
+            this(d, p, null, null);
         }
 
-        Node(T d, Node<T> l, Node<T> r) {
+        Node(T d, long p, Node<T> l, Node<T> r) {
             data = d;
+            prefix = p;
             left = l;
             right = r;
+            height = Math.max(l == null ? 0 : l.height, r == null ? 0 : r.height) + 1;
         }
     }
 
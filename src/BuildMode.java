@@ -0,0 +1,21 @@
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Modes in which an index tree can be built, trading line number postings for speed and memory.
+ */
+public enum BuildMode {
+    /**
+     * Every word keeps the set of line numbers it appears on.
+     */
+    FULL,
+    /**
+     * Only word frequencies are kept, every word's index stays empty.
+     */
+    COUNTS_ONLY,
+    /**
+     * Line numbers are appended to a compact array and only turned into a set when the word's index is read.
+     */
+    LAZY_POSTINGS
+}
@@ -0,0 +1,478 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Checkpoints and write-ahead log of an index build, so that an interrupted build resumes where it stopped.
+ * <p>
+ * A checkpoint holds every word of the tree together with the file offset and line number the build had
+ * reached. Words read after it are appended to the log, followed from time to time by a mark holding the
+ * offset and line number reached. On recovery the checkpoint is loaded, the log is replayed up to its last
+ * mark, and the build resumes from that mark. Only the contents of the tree are kept, not its shape. Each
+ * log starts with the offset of the checkpoint it follows, so a log left over from before the latest
+ * checkpoint is ignored. Checkpoints and logs of a different file, order or build mode are ignored as well,
+ * and ones which cannot be read are discarded, the build starting over.
+ */
+public class CheckpointLog implements Closeable {
+    /**
+     * First int of a checkpoint file.
+     */
+    private static final int CHECKPOINT_MAGIC = 0x42535443;
+    /**
+     * First int of a log file.
+     */
+    private static final int LOG_MAGIC = 0x4253544C;
+    /**
+     * Record of a word short enough for writeUTF, in a log or checkpoint.
+     */
+    private static final byte WORD_RECORD = 'W';
+    /**
+     * Record of a word too long for writeUTF, written as its length and characters.
+     */
+    private static final byte LONG_WORD_RECORD = 'L';
+    /**
+     * Record ending the words of a checkpoint.
+     */
+    private static final byte END_RECORD = 0;
+    /**
+     * Greatest number of bytes writeUTF can encode.
+     */
+    private static final int MAX_UTF_LENGTH = 65535;
+    /**
+     * Log record of a resume point.
+     */
+    private static final byte MARK_RECORD = 'M';
+    /**
+     * Minimum number of input bytes between two marks, each of which flushes the log.
+     */
+    private static final long MARK_INTERVAL = 1 << 20;
+
+    /**
+     * Latest checkpoint.
+     */
+    private File checkpointFile;
+    /**
+     * Checkpoint being written.
+     */
+    private File temporaryFile;
+    /**
+     * Log of words read since the latest checkpoint.
+     */
+    private File logFile;
+    /**
+     * Minimum number of input bytes between two checkpoints.
+     */
+    private long checkpointInterval;
+    /**
+     * Description of the build, which has to match for a checkpoint to be used.
+     */
+    private String buildKey;
+
+    /**
+     * Open log, null until recovery is done.
+     */
+    private DataOutputStream log;
+    /**
+     * Byte offset the build resumes from.
+     */
+    private long resumeOffset;
+    /**
+     * Line number the build resumes from.
+     */
+    private int resumeLine;
+    /**
+     * Offset of the latest checkpoint.
+     */
+    private long checkpointOffset;
+    /**
+     * Offset of the latest mark.
+     */
+    private long markOffset;
+
+    public CheckpointLog(File directory, File source, String order, BuildMode mode, long checkpointInterval) {
+        this.checkpointFile = new File(directory, "index.checkpoint");
+        this.temporaryFile = new File(directory, "index.checkpoint.tmp");
+        this.logFile = new File(directory, "index.log");
+        this.checkpointInterval = checkpointInterval;
+        this.buildKey = source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified() + "|"
+                + order + "|" + mode;
+        this.resumeLine = 1;
+    }
+
+    /**
+     * Reads the latest checkpoint, if it belongs to the same build.
+     *
+     * @return : Words of the checkpoint in tree order, empty if there is none.
+     * @throws IOException : If the checkpoint cannot be read.
+     */
+    public ArrayList<Word> readCheckpoint() throws IOException {
+        ArrayList<Word> words = new ArrayList<>();
+        if (!checkpointFile.exists()) {
+            return words;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile),
+                1 << 16))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || !in.readUTF().equals(buildKey)) {
+                return words;
+            }
+            long offset = in.readLong();
+            int line = in.readInt();
+            byte type;
+            while ((type = in.readByte()) != END_RECORD) {
+                Word word = new Word(readWord(in, type));
+                word.setFrequency(in.readInt());
+                int postings = in.readInt();
+                for (int i = 0; i < postings; i++) {
+                    word.addToIndexLazily(in.readInt());
+                }
+                words.add(word);
+            }
+            resumeOffset = offset;
+            resumeLine = line;
+            checkpointOffset = offset;
+            markOffset = offset;
+        }
+        return words;
+    }
+
+    /**
+     * Replays the words logged after the latest checkpoint, up to the last mark, and opens the log for
+     * appending from there. Must be called after readCheckpoint.
+     *
+     * @param replay : Listener receiving the logged words.
+     * @throws IOException : If the log cannot be read or opened.
+     */
+    public void replayLog(WordTokenizer.Listener replay) throws IOException {
+        long lastMark = -1;
+        if (logFile.exists()) {
+            lastMark = findLastMark();
+        }
+
+        if (lastMark < 0) {
+            startLog();
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile),
+                1 << 16))) {
+            in.readInt();
+            in.readUTF();
+            in.readLong();
+            long position = logHeaderLength();
+            while (position < lastMark) {
+                byte type = in.readByte();
+                if (type == WORD_RECORD || type == LONG_WORD_RECORD) {
+                    String text = readWord(in, type);
+                    replay.word(text, in.readInt());
+                    position += wordRecordLength(text) + Integer.BYTES;
+                } else {
+                    resumeOffset = in.readLong();
+                    resumeLine = in.readInt();
+                    markOffset = resumeOffset;
+                    position += 1 + Long.BYTES + Integer.BYTES;
+                }
+            }
+        }
+
+        /*
+        Drop anything logged after the last mark, it is read again from the resume point.
+         */
+        try (FileOutputStream truncate = new FileOutputStream(logFile, true)) {
+            truncate.getChannel().truncate(lastMark);
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true), 1 << 16));
+    }
+
+    /**
+     * Finds the end of the last complete mark in a log following the latest checkpoint.
+     *
+     * @return : Byte position just after the last mark, or -1 if the log has none or is stale.
+     * @throws IOException : If the log cannot be read.
+     */
+    private long findLastMark() throws IOException {
+        long lastMark = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile),
+                1 << 16))) {
+            if (in.readInt() != LOG_MAGIC || !in.readUTF().equals(buildKey) || in.readLong() != checkpointOffset) {
+                return -1;
+            }
+            long position = logHeaderLength();
+            while (true) {
+                byte type = in.readByte();
+                if (type == WORD_RECORD || type == LONG_WORD_RECORD) {
+                    String text = readWord(in, type);
+                    in.readInt();
+                    position += wordRecordLength(text) + Integer.BYTES;
+                } else if (type == MARK_RECORD) {
+                    in.readLong();
+                    in.readInt();
+                    position += 1 + Long.BYTES + Integer.BYTES;
+                    lastMark = position;
+                } else {
+                    return lastMark;
+                }
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            /*
+            Log ends with a record cut short by the crash.
+             */
+            return lastMark;
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the header of a log.
+     *
+     * @return : Header length.
+     */
+    private long logHeaderLength() {
+        return Integer.BYTES + 2 + utfLength(buildKey) + Long.BYTES;
+    }
+
+    /**
+     * Returns the number of bytes writeUTF uses for the characters of a string.
+     *
+     * @param text : String written to the log.
+     * @return : Encoded length.
+     */
+    private static int utfLength(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a word record, using writeUTF unless the word is too long for it.
+     *
+     * @param out  : Log or checkpoint being written.
+     * @param text : Word to be written.
+     * @throws IOException : If the word cannot be written.
+     */
+    private static void writeWord(DataOutputStream out, String text) throws IOException {
+        if (utfLength(text) <= MAX_UTF_LENGTH) {
+            out.writeByte(WORD_RECORD);
+            out.writeUTF(text);
+        } else {
+            out.writeByte(LONG_WORD_RECORD);
+            out.writeInt(text.length());
+            out.writeChars(text);
+        }
+    }
+
+    /**
+     * Reads the word of a word record whose type was already read.
+     *
+     * @param in   : Log or checkpoint being read.
+     * @param type : Type of the record.
+     * @return : Word of the record.
+     * @throws IOException : If the record cannot be read, or has an unknown type.
+     */
+    private static String readWord(DataInputStream in, byte type) throws IOException {
+        if (type == WORD_RECORD) {
+            return in.readUTF();
+        }
+        if (type != LONG_WORD_RECORD) {
+            throw new IOException("Unknown record type " + type);
+        }
+        int length = in.readInt();
+        if (length < 0) {
+            throw new EOFException();
+        }
+        StringBuilder text = new StringBuilder(Math.min(length, 1 << 16));
+        for (int i = 0; i < length; i++) {
+            text.append(in.readChar());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the number of bytes writeWord uses for a word, including the record type.
+     *
+     * @param text : Word written to the log.
+     * @return : Encoded length.
+     */
+    private static long wordRecordLength(String text) {
+        int length = utfLength(text);
+        if (length <= MAX_UTF_LENGTH) {
+            return 1 + 2 + length;
+        }
+        return 1 + Integer.BYTES + 2L * text.length();
+    }
+
+    /**
+     * Starts a new log following the latest checkpoint.
+     *
+     * @throws IOException : If the log cannot be written.
+     */
+    private void startLog() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile), 1 << 16));
+        log.writeInt(LOG_MAGIC);
+        log.writeUTF(buildKey);
+        log.writeLong(checkpointOffset);
+    }
+
+    /**
+     * Returns the byte offset the build resumes from.
+     *
+     * @return : Byte offset in the source file.
+     */
+    public long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * Returns the line number the build resumes from.
+     *
+     * @return : Line number at the resume offset.
+     */
+    public int getResumeLine() {
+        return resumeLine;
+    }
+
+    /**
+     * Appends a word occurrence to the log.
+     *
+     * @param text       : Word as recorded in the tree.
+     * @param lineNumber : Line number the word appears on.
+     * @throws IOException : If the log cannot be written.
+     */
+    public void logWord(String text, int lineNumber) throws IOException {
+        writeWord(log, text);
+        log.writeInt(lineNumber);
+    }
+
+    /**
+     * Records a resume point, writing a mark and flushing the log once enough input was read since the last one.
+     *
+     * @param offset     : Byte offset the build could resume from.
+     * @param lineNumber : Line number at that offset.
+     * @return : true if a checkpoint is due.
+     * @throws IOException : If the log cannot be written.
+     */
+    public boolean mark(long offset, int lineNumber) throws IOException {
+        if (offset - markOffset < MARK_INTERVAL) {
+            return false;
+        }
+        log.writeByte(MARK_RECORD);
+        log.writeLong(offset);
+        log.writeInt(lineNumber);
+        log.flush();
+        markOffset = offset;
+        return offset - checkpointOffset >= checkpointInterval;
+    }
+
+    /**
+     * Writes a checkpoint of the tree and starts a new log after it.
+     * The checkpoint is written to a temporary file, synced and then renamed over the previous one.
+     *
+     * @param words      : Words of the tree, in tree order.
+     * @param offset     : Byte offset the build reached.
+     * @param lineNumber : Line number at that offset.
+     * @param mode       : Whether line numbers are kept, skipped or recorded lazily.
+     * @throws IOException : If the checkpoint cannot be written.
+     */
+    public void checkpoint(Iterable<Word> words, long offset, int lineNumber, BuildMode mode) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(temporaryFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeUTF(buildKey);
+            out.writeLong(offset);
+            out.writeInt(lineNumber);
+            for (Word word : words) {
+                writeWord(out, word.getWord());
+                out.writeInt(word.getFrequency());
+                if (mode == BuildMode.COUNTS_ONLY) {
+                    out.writeInt(0);
+                } else {
+                    /*
+                    Lines are written in increasing order, the order they were added in while building.
+                    They are read without materializing the index, which lazy builds leave compact.
+                     */
+                    int[] lines = word.getLineNumbers();
+                    out.writeInt(lines.length);
+                    for (int line : lines) {
+                        out.writeInt(line);
+                    }
+                }
+            }
+            out.writeByte(END_RECORD);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        checkpointOffset = offset;
+        markOffset = offset;
+        startLog();
+    }
+
+    /**
+     * Discards a checkpoint and log which could not be read, and starts a new log for a build from the start
+     * of the file.
+     *
+     * @throws IOException : If the checkpoint or log cannot be removed, or the new log cannot be written.
+     */
+    public void discard() throws IOException {
+        close();
+        Files.deleteIfExists(checkpointFile.toPath());
+        Files.deleteIfExists(logFile.toPath());
+        resumeOffset = 0;
+        resumeLine = 1;
+        checkpointOffset = 0;
+        markOffset = 0;
+        startLog();
+    }
+
+    /**
+     * Removes the checkpoint and log once the build is complete.
+     *
+     * @throws IOException : If the log cannot be closed.
+     */
+    public void finish() throws IOException {
+        close();
+        logFile.delete();
+        checkpointFile.delete();
+    }
+
+    /**
+     * Closes the log, keeping it for recovery.
+     *
+     * @throws IOException : If the log cannot be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+}
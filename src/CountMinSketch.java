@@ -0,0 +1,141 @@
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Count-Min sketch estimating the frequency of words in fixed memory.
+ * An estimate is never below the true count, and with probability 1 - delta it is at most
+ * epsilon times the total count above it. Sketches of the same size can be merged by adding
+ * their counters, so chunks of a stream can be counted separately.
+ */
+public class CountMinSketch {
+    /**
+     * Counters, one row per hash function.
+     */
+    private long[][] counts;
+    /**
+     * Number of counters in each row.
+     */
+    private int width;
+    /**
+     * Number of rows.
+     */
+    private int depth;
+    /**
+     * Sum of all counts added.
+     */
+    private long total;
+
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be between 0 and 1");
+        }
+        width = (int) Math.ceil(Math.E / epsilon);
+        depth = (int) Math.ceil(Math.log(1 / delta));
+        counts = new long[depth][width];
+    }
+
+    /**
+     * Returns a 64 bit hash of a word, mixed so that each of its bits depends on every character.
+     *
+     * @param text : Word to be hashed.
+     * @return : Hash of the word.
+     */
+    private static long hash(String text) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the column of a word's counter in a given row.
+     *
+     * @param h   : Hash of the word.
+     * @param row : Row of the counter.
+     * @return : Column of the counter.
+     */
+    private int column(long h, int row) {
+        long rowHash = (h & 0xFFFFFFFFL) + row * (h >>> 32);
+        return (int) Long.remainderUnsigned(rowHash, width);
+    }
+
+    /**
+     * Adds occurrences of a word.
+     *
+     * @param text  : Word to be counted.
+     * @param count : Number of occurrences.
+     */
+    public void add(String text, long count) {
+        long h = hash(text);
+        for (int row = 0; row < depth; row++) {
+            counts[row][column(h, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Returns the estimated number of occurrences of a word.
+     *
+     * @param text : Word to be estimated.
+     * @return : Estimated count, never below the true count.
+     */
+    public long estimate(String text) {
+        long h = hash(text);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row][column(h, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counters of another sketch of the same size to this one.
+     *
+     * @param other : Sketch to be merged.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different sizes");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                counts[row][col] += other.counts[row][col];
+            }
+        }
+        total += other.total;
+    }
+
+    /**
+     * Returns the sum of all counts added.
+     *
+     * @return : Total count.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of counters in each row.
+     *
+     * @return : Width of the sketch.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return : Depth of the sketch.
+     */
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -75,6 +75,18 @@ public class Driver {
         System.out.println(index.sortByFrequency(tree3));
         System.out.println();
         System.out.println("***********************************************************");
+        System.out.println();
+//
+        System.out.println("**********MERGE index tree with itself*************\n");
+        try {
+            index.mergeIndexes(tree2, tree2);
+            System.out.println("merged");
+        } catch (IllegalArgumentException e) {
+            System.out.println("rejected: " + e.getMessage());
+        }
+        System.out.println("the number of nodes is " + tree2.getNumberOfNodes());
+        System.out.println();
+        System.out.println("***********************************************************");
     }
 }
 
@@ -118,5 +130,12 @@ root: a 9 [1, 3, 8]
 tree sorted by frequency
 [a 9 [1, 3, 8], the 9 [2, 4, 5, 6, 7], of 7 [1, 3, 4, 6, 7], and 4 [2, 4, 5, 8], Bible 3 [1, 4, 7], in 3 [1, 4, 6], is 3 [4, 6, 7], A 2 [8], The 2 [1, 4], child 2 [5, 7], selections 2 [2], that 2 [4, 5], words 2 [6, 8], Children 1 [1], English 1 [1], It 1 [6], New 1 [2], Old 1 [2], Testament 1 [2], These 1 [2], are 1 [6], as 1 [3], be 1 [5], been 1 [3], both 1 [2], but 1 [4], by 1 [5], children 1 [5], easily 1 [5], five 1 [3], for 1 [6], from 1 [2], gradually 1 [7], have 1 [3], he 1 [7], idioms 1 [8], it 1 [5], itself 1 [4], language 1 [4], learn 1 [7], made 1 [3], may 1 [5], meaning 1 [7], more 1 [3], new 1 [7], not 1 [6], observation 1 [3], older 1 [6], one 1 [6], provides 1 [1], read 1 [5], reading 1 [7], result 1 [3], s 1 [1], should 1 [7], simple 1 [1], so 1 [5], study 1 [4], syllable 1 [6], text 1 [4], than 1 [3], those 1 [6], to 1 [5], translation 1 [1], twenty 1 [3], while 1 [6], who 1 [6], years 1 [3], younger 1 [5]]
 
+***********************************************************
+
+**********MERGE index tree with itself*************
+
+rejected: Cannot combine a tree with itself
+the number of nodes is 64
+
 ***********************************************************
 */
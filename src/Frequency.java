@@ -1,10 +1,8 @@
-import java.util.Comparator;
-
 /**
  * @author : Arkesh Rath
  * Custom comparator class to compare 2 words.
  */
-public class Frequency implements Comparator<Word> {
+public class Frequency implements PrefixComparator<Word> {
 
     /**
      * Compare 2 words based on their frequencies.
@@ -17,4 +15,15 @@ public class Frequency implements Comparator<Word> {
     public int compare(Word o1, Word o2) {
         return o2.getFrequency() - o1.getFrequency();
     }
+
+    /**
+     * Returns the key prefix of a word's frequency, higher frequencies first.
+     *
+     * @param word : Word to be summarized.
+     * @return : Key prefix of the word.
+     */
+    @Override
+    public long prefix(Word word) {
+        return -(long) word.getFrequency() ^ Long.MIN_VALUE;
+    }
 }
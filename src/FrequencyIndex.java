@@ -0,0 +1,365 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Secondary index which keeps words grouped into buckets by frequency.
+ * Buckets form a linked list from the highest frequency down, so incrementing a word moves it to the
+ * next bucket in constant time. Words with the same frequency are put in the order of the tree they
+ * belong to only when a bucket is read, and a bucket stays in order while words are appended to it in
+ * order, so a walk yields exactly what sorting the tree's in-order sequence by the frequency comparator
+ * would.
+ * <p>
+ * The index does not notice changes made to a word's frequency without going through it.
+ */
+public class FrequencyIndex implements Iterable<Word> {
+    /**
+     * Bucket with the highest frequency, null if the index is empty.
+     */
+    private Bucket highest;
+    /**
+     * Bucket with the lowest frequency, null if the index is empty.
+     */
+    private Bucket lowest;
+    /**
+     * Buckets keyed by frequency.
+     */
+    private HashMap<Integer, Bucket> buckets;
+    /**
+     * Order of words within a single bucket.
+     */
+    private Comparator<Word> order;
+
+    public FrequencyIndex() {
+        this(null);
+    }
+
+    public FrequencyIndex(Comparator<Word> comp) {
+        buckets = new HashMap<>();
+        order = comp == null ? Comparator.naturalOrder() : comp;
+    }
+
+    /**
+     * Builds the index of a tree's words, creating every bucket before filling them in tree order.
+     *
+     * @param comp  : Order of words within a bucket, null for the word's natural order.
+     * @param words : Words of the tree, in tree order.
+     */
+    public FrequencyIndex(Comparator<Word> comp, Iterable<Word> words) {
+        this(comp);
+        TreeSet<Integer> frequencies = new TreeSet<>();
+        for (Word word : words) {
+            frequencies.add(word.getFrequency());
+        }
+        for (int frequency : frequencies) {
+            Bucket bucket = new Bucket(frequency);
+            if (highest == null) {
+                linkBelowAll(bucket);
+            } else {
+                linkAbove(bucket, highest);
+            }
+            buckets.put(frequency, bucket);
+        }
+        for (Word word : words) {
+            buckets.get(word.getFrequency()).add(word);
+        }
+    }
+
+    /**
+     * Adds a word to the bucket of its current frequency.
+     *
+     * @param word : Word to be added.
+     */
+    public void add(Word word) {
+        bucketOf(word.getFrequency(), null).add(word);
+    }
+
+    /**
+     * Removes a word from the bucket of its current frequency.
+     *
+     * @param word : Word to be removed.
+     */
+    public void remove(Word word) {
+        Bucket bucket = buckets.get(word.getFrequency());
+        if (bucket != null && bucket.remove(word)) {
+            unlink(bucket);
+        }
+    }
+
+    /**
+     * Increments the frequency of a word, moving it up one bucket.
+     *
+     * @param word : Word whose frequency has to be incremented.
+     */
+    public void increment(Word word) {
+        Bucket bucket = buckets.get(word.getFrequency());
+        if (bucket == null) {
+            word.setFrequency(word.getFrequency() + 1);
+            add(word);
+            return;
+        }
+
+        Bucket next = bucketOf(word.getFrequency() + 1, bucket);
+        if (bucket.remove(word)) {
+            unlink(bucket);
+        }
+        word.setFrequency(word.getFrequency() + 1);
+        next.add(word);
+    }
+
+    /**
+     * Private helper method to find the bucket of a frequency, creating it if needed.
+     *
+     * @param frequency : Frequency of the bucket.
+     * @param below     : Bucket of the frequency just below, or null if not known.
+     * @return : Bucket of the frequency.
+     */
+    private Bucket bucketOf(int frequency, Bucket below) {
+        Bucket bucket = buckets.get(frequency);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        bucket = new Bucket(frequency);
+        if (below == null && lowest != null && lowest.frequency < frequency) {
+            /*
+            New words start at the lowest frequency, so the walk up from the bottom is short.
+             */
+            below = lowest;
+            while (below.higher != null && below.higher.frequency < frequency) {
+                below = below.higher;
+            }
+        }
+        if (below == null) {
+            linkBelowAll(bucket);
+        } else {
+            linkAbove(bucket, below);
+        }
+        buckets.put(frequency, bucket);
+        return bucket;
+    }
+
+    /**
+     * Private helper method to link a bucket just above another one.
+     *
+     * @param bucket : Bucket to be linked.
+     * @param below  : Bucket it goes above.
+     */
+    private void linkAbove(Bucket bucket, Bucket below) {
+        bucket.lower = below;
+        bucket.higher = below.higher;
+        if (below.higher == null) {
+            highest = bucket;
+        } else {
+            below.higher.lower = bucket;
+        }
+        below.higher = bucket;
+    }
+
+    /**
+     * Private helper method to link a bucket below every other one.
+     *
+     * @param bucket : Bucket to be linked.
+     */
+    private void linkBelowAll(Bucket bucket) {
+        if (lowest == null) {
+            highest = bucket;
+        } else {
+            bucket.higher = lowest;
+            lowest.lower = bucket;
+        }
+        lowest = bucket;
+    }
+
+    /**
+     * Private helper method to unlink an empty bucket.
+     *
+     * @param bucket : Bucket to be unlinked.
+     */
+    private void unlink(Bucket bucket) {
+        if (bucket.higher == null) {
+            highest = bucket.lower;
+        } else {
+            bucket.higher.lower = bucket.lower;
+        }
+        if (bucket.lower == null) {
+            lowest = bucket.higher;
+        } else {
+            bucket.lower.higher = bucket.higher;
+        }
+        buckets.remove(bucket.frequency);
+    }
+
+    /**
+     * Returns the highest frequency held in the index.
+     *
+     * @return : Highest frequency, or 0 if the index is empty.
+     */
+    public int getHighestFrequency() {
+        return highest == null ? 0 : highest.frequency;
+    }
+
+    /**
+     * Returns the words of the highest frequency, in tree order.
+     *
+     * @return : List of word objects with highest frequency.
+     */
+    public ArrayList<Word> getHighest() {
+        if (highest == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(highest.sortedWords());
+    }
+
+    /**
+     * Returns a word of the lowest frequency, the one which has had that frequency the longest.
+     *
+     * @return : Word of the lowest frequency, or null if the index is empty.
+     */
+    public Word getLowest() {
+        if (lowest == null) {
+            return null;
+        }
+        return lowest.words.iterator().next();
+    }
+
+    /**
+     * Returns all words sorted by frequency, ties kept in tree order.
+     *
+     * @return : List of word objects sorted by frequency.
+     */
+    public ArrayList<Word> toList() {
+        ArrayList<Word> sortedFrequencyList = new ArrayList<>();
+        for (Bucket bucket = highest; bucket != null; bucket = bucket.lower) {
+            sortedFrequencyList.addAll(bucket.sortedWords());
+        }
+        return sortedFrequencyList;
+    }
+
+    /**
+     * Returns an iterator over all words, highest frequency first.
+     *
+     * @return : Iterator object.
+     */
+    @Override
+    public Iterator<Word> iterator() {
+        return new Iterator<Word>() {
+            private Bucket nextBucket = highest;
+            private Iterator<Word> wordIterator = null;
+
+            @Override
+            public boolean hasNext() {
+                while ((wordIterator == null || !wordIterator.hasNext()) && nextBucket != null) {
+                    wordIterator = nextBucket.sortedWords().iterator();
+                    nextBucket = nextBucket.lower;
+                }
+                return wordIterator != null && wordIterator.hasNext();
+            }
+
+            @Override
+            public Word next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return wordIterator.next();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of distinct frequencies held in the index.
+     *
+     * @return : Number of buckets.
+     */
+    public int getNumberOfBuckets() {
+        return buckets.size();
+    }
+
+    /**
+     * Words of a single frequency, in the order they were added, which is tree order while sorted is set.
+     */
+    private class Bucket {
+        /**
+         * Frequency of every word in the bucket.
+         */
+        private int frequency;
+        /**
+         * Words of the bucket. Word does not override equals, so words which compare equal stay distinct.
+         */
+        private LinkedHashSet<Word> words;
+        /**
+         * Word added last, null if it was removed since.
+         */
+        private Word last;
+        /**
+         * Whether the words are in tree order.
+         */
+        private boolean sorted;
+        /**
+         * Bucket of the next higher frequency.
+         */
+        private Bucket higher;
+        /**
+         * Bucket of the next lower frequency.
+         */
+        private Bucket lower;
+
+        Bucket(int f) {
+            frequency = f;
+            words = new LinkedHashSet<>();
+            sorted = true;
+        }
+
+        /**
+         * Appends a word, noting whether it breaks tree order.
+         *
+         * @param word : Word to be added.
+         */
+        void add(Word word) {
+            if (sorted && !words.isEmpty() && (last == null || order.compare(last, word) > 0)) {
+                sorted = false;
+            }
+            words.add(word);
+            last = word;
+        }
+
+        /**
+         * Removes a word.
+         *
+         * @param word : Word to be removed.
+         * @return : true if the bucket is left empty.
+         */
+        boolean remove(Word word) {
+            words.remove(word);
+            if (word == last) {
+                last = null;
+            }
+            return words.isEmpty();
+        }
+
+        /**
+         * Returns the words in tree order, sorting them first if needed. The sort is stable, so words
+         * which compare equal keep the order they were added in.
+         *
+         * @return : Words of the bucket.
+         */
+        LinkedHashSet<Word> sortedWords() {
+            if (!sorted) {
+                ArrayList<Word> list = new ArrayList<>(words);
+                list.sort(order);
+                words = new LinkedHashSet<>(list);
+                last = list.get(list.size() - 1);
+                sorted = true;
+            }
+            return words;
+        }
+    }
+}
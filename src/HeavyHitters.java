@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Approximate frequency counter for word streams too large to index, using fixed memory.
+ * A Space-Saving summary tracks at most k candidate words, and a Count-Min sketch bounds the
+ * count of any word. Every word occurring more than total / k times is guaranteed to be tracked,
+ * and a reported frequency is at most epsilon times the total above the true one with probability
+ * 1 - delta. Summaries built over separate chunks, e.g. one per thread, can be merged.
+ */
+public class HeavyHitters {
+    /**
+     * Maximum number of tracked words.
+     */
+    private int capacity;
+    /**
+     * Tracked words, keyed by their text. Their frequencies are Space-Saving counts.
+     */
+    private HashMap<String, Word> counters;
+    /**
+     * Tracked words grouped by frequency, to find the word to replace.
+     */
+    private FrequencyIndex frequencies;
+    /**
+     * Sketch bounding the count of every word.
+     */
+    private CountMinSketch sketch;
+
+    public HeavyHitters(int k, double epsilon, double delta) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        capacity = k;
+        counters = new HashMap<>();
+        frequencies = new FrequencyIndex();
+        sketch = new CountMinSketch(epsilon, delta);
+    }
+
+    /**
+     * Counts one occurrence of a word.
+     *
+     * @param text : Word to be counted.
+     */
+    public void add(String text) {
+        sketch.add(text, 1);
+
+        Word tracked = counters.get(text);
+        if (tracked != null) {
+            if (tracked.getFrequency() < Integer.MAX_VALUE) {
+                frequencies.increment(tracked);
+            }
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            tracked = new Word(text);
+            counters.put(text, tracked);
+            frequencies.add(tracked);
+            return;
+        }
+
+        /*
+        Summary is full, the word takes over the counter of a least frequent word, inheriting its count.
+         */
+        tracked = frequencies.getLowest();
+        frequencies.remove(tracked);
+        counters.remove(tracked.getWord());
+        tracked.setWord(text);
+        counters.put(text, tracked);
+        frequencies.increment(tracked);
+    }
+
+    /**
+     * Merges the summary of another chunk of the stream into this one.
+     * Both summaries must have been created with the same epsilon and delta.
+     *
+     * @param other : Summary to be merged.
+     */
+    public void merge(HeavyHitters other) {
+        sketch.merge(other.sketch);
+
+        long thisMissing = counters.size() < capacity ? 0 : frequencies.getLowest().getFrequency();
+        long otherMissing = other.counters.size() < other.capacity ? 0 : other.frequencies.getLowest().getFrequency();
+
+        /*
+        A word missing from a full summary may have occurred up to that summary's lowest count times.
+         */
+        HashMap<String, Long> merged = new HashMap<>();
+        for (Word word : counters.values()) {
+            Word otherWord = other.counters.get(word.getWord());
+            merged.put(word.getWord(), word.getFrequency() + (otherWord == null ? otherMissing : otherWord.getFrequency()));
+        }
+        for (Word otherWord : other.counters.values()) {
+            if (!merged.containsKey(otherWord.getWord())) {
+                merged.put(otherWord.getWord(), otherWord.getFrequency() + thisMissing);
+            }
+        }
+
+        ArrayList<Map.Entry<String, Long>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        counters.clear();
+        frequencies = new FrequencyIndex();
+        for (int i = 0; i < entries.size() && i < capacity; i++) {
+            Word word = new Word(entries.get(i).getKey());
+            word.setFrequency((int) Math.min(Integer.MAX_VALUE, entries.get(i).getValue()));
+            counters.put(word.getWord(), word);
+            frequencies.add(word);
+        }
+    }
+
+    /**
+     * Returns the estimated number of occurrences of a word.
+     *
+     * @param text : Word to be estimated.
+     * @return : Estimated count, never below the true count.
+     */
+    public long estimate(String text) {
+        long estimate = sketch.estimate(text);
+        Word tracked = counters.get(text);
+        if (tracked != null && tracked.getFrequency() < Integer.MAX_VALUE) {
+            estimate = Math.min(estimate, tracked.getFrequency());
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the tracked words sorted by estimated frequency, ties in the word's natural order.
+     * Words are copies holding the estimate as frequency and an empty index.
+     *
+     * @return : List of word objects sorted by frequency.
+     */
+    public ArrayList<Word> sortByFrequency() {
+        ArrayList<Word> sortedFrequencyList = new ArrayList<>();
+        for (Word tracked : counters.values()) {
+            Word word = new Word(tracked.getWord());
+            word.setFrequency((int) Math.min(Integer.MAX_VALUE, estimate(tracked.getWord())));
+            sortedFrequencyList.add(word);
+        }
+
+        Collections.sort(sortedFrequencyList);
+        Collections.sort(sortedFrequencyList, new Frequency());
+
+        return sortedFrequencyList;
+    }
+
+    /**
+     * Returns the tracked words of the highest estimated frequency.
+     *
+     * @return : List of word objects with highest frequency.
+     */
+    public ArrayList<Word> getHighestFrequency() {
+        ArrayList<Word> highestFrequencyList = new ArrayList<>();
+        for (Word word : sortByFrequency()) {
+            if (!highestFrequencyList.isEmpty()
+                    && word.getFrequency() != highestFrequencyList.get(0).getFrequency()) {
+                break;
+            }
+            highestFrequencyList.add(word);
+        }
+        return highestFrequencyList;
+    }
+
+    /**
+     * Returns the number of words counted.
+     *
+     * @return : Total count.
+     */
+    public long getTotal() {
+        return sketch.getTotal();
+    }
+}
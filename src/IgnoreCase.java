@@ -1,10 +1,8 @@
-import java.util.Comparator;
-
 /**
  * @author : Arkesh Rath
  * Custom comparator class to compare 2 words.
  */
-public class IgnoreCase implements Comparator<Word> {
+public class IgnoreCase implements PrefixComparator<Word> {
 
     /**
      * Compare 2 words based on their string value in lowercase.
@@ -17,4 +15,15 @@ public class IgnoreCase implements Comparator<Word> {
     public int compare(Word o1, Word o2) {
         return o1.getWord().compareToIgnoreCase(o2.getWord());
     }
+
+    /**
+     * Returns the key prefix of a word's string value in lowercase.
+     *
+     * @param word : Word to be summarized.
+     * @return : Key prefix of the word.
+     */
+    @Override
+    public long prefix(Word word) {
+        return PrefixComparator.pack(word.getWord(), true);
+    }
 }
@@ -1,10 +1,18 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Scanner;
 import java.util.Iterator;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * @author : Arkesh Rath
@@ -12,112 +20,284 @@ import java.util.Comparator;
  * Class which helps in building an index BST based on a text file.
  */
 public class Index {
+    /**
+     * Frequency indexes of the trees built by this object, maintained while the trees are built and updated,
+     * and only read while they are known to be current.
+     */
+    private Map<BST<Word>, FrequencyIndexEntry> frequencyIndexes = new WeakHashMap<>();
+    /**
+     * Whether trees built by this object get a frequency index.
+     */
+    private boolean frequencyIndexing;
+    /**
+     * Decoder used to read text files.
+     */
+    private CharsetDecoder decoder = StandardCharsets.ISO_8859_1.newDecoder();
+    /**
+     * Directory holding checkpoints of file builds, null when builds are not checkpointed.
+     */
+    private File checkpointDirectory;
+    /**
+     * Minimum number of bytes read between two checkpoints.
+     */
+    private long checkpointInterval;
+    /**
+     * Balancing of the trees built from files.
+     */
+    private BST.Balancing balancing = BST.Balancing.NONE;
+
+    /**
+     * Sets how trees built from files keep their shape. Trees are not balanced by default.
+     *
+     * @param balancing : Balancing of the trees.
+     */
+    public void setBalancing(BST.Balancing balancing) {
+        this.balancing = balancing;
+    }
+
+    /**
+     * Sets whether trees built by this object keep a frequency index while they are built and updated,
+     * so that sortByFrequency and getHighestFrequency do not sort the whole tree. Keeping the index slows
+     * builds down, so it is off by default.
+     *
+     * @param frequencyIndexing : Whether to keep frequency indexes.
+     */
+    public void setFrequencyIndexing(boolean frequencyIndexing) {
+        this.frequencyIndexing = frequencyIndexing;
+    }
+
+    /**
+     * Sets the charset text files are read in, replacing malformed input. Files are read as latin1 by default.
+     *
+     * @param charset : Charset of the text files.
+     */
+    public void setCharset(Charset charset) {
+        setDecoder(charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    /**
+     * Sets the decoder text files are read with. A decoder replacing malformed and unmappable input reads
+     * every file to the end, one reporting them (the default of Charset.newDecoder) makes builds of files
+     * holding such input fail with an error message.
+     *
+     * @param decoder : Decoder for the charset of the text files.
+     */
+    public void setDecoder(CharsetDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Makes file builds write checkpoints and a log of their progress to a directory, and resume from them
+     * after being interrupted. Checkpoints are removed once a build completes. Only files read in a charset
+     * encoding ASCII as single bytes can be resumed, so builds in other charsets, like UTF-16, are not
+     * checkpointed.
+     * <p>
+     * A resumed build holds the same words, frequencies and line numbers as an uninterrupted one, but not
+     * the same shape: the words of the checkpoint are inserted as one batch, so the tree's height and root
+     * can differ.
+     *
+     * @param directory     : Directory for checkpoints, null to stop checkpointing.
+     * @param intervalBytes : Minimum number of bytes read between two checkpoints.
+     */
+    public void setCheckpointing(String directory, long intervalBytes) {
+        checkpointDirectory = directory == null ? null : new File(directory);
+        checkpointInterval = intervalBytes;
+    }
 
     /**
      * Builds an index tree, in string's natural order.
      *
      * @param fileName : File whose index tree has to be built.
-     * @return : An indexed BST.
+     * @return : An indexed BST, or null if the file is empty or could not be indexed to its end.
      */
     public BST<Word> buildIndex(String fileName) {
+        return buildIndex(fileName, null, BuildMode.FULL);
+    }
+
+    /**
+     * Builds an indexed BST based on order defined by the passed comparator.
+     *
+     * @param fileName   : File whose index BST has to be built.
+     * @param comparator : Comparator to be used to compare 2 different words.
+     * @return : An indexed BST, or null if the file is empty or could not be indexed to its end.
+     */
+    public BST<Word> buildIndex(String fileName, Comparator<Word> comparator) {
+        return buildIndex(fileName, comparator, BuildMode.FULL);
+    }
+
+    /**
+     * Builds an indexed BST based on order defined by the passed comparator, keeping line numbers
+     * as defined by the build mode.
+     *
+     * @param fileName   : File whose index BST has to be built.
+     * @param comparator : Comparator to be used to compare 2 different words, null for natural order.
+     * @param mode       : Whether line numbers are kept, skipped or recorded lazily.
+     * @return : An indexed BST, or null if the file is empty or could not be indexed to its end.
+     */
+    public BST<Word> buildIndex(String fileName, Comparator<Word> comparator, BuildMode mode) {
         File file = new File(fileName);
+
         if (file == null || file.length() == 0) {
             return null;
         }
 
-        BST<Word> indexedBST = new BST<>();
-        int currentLine = 1;
-        Scanner scanner = null;
+        BST<Word> indexedBST = new BST<>(comparator, balancing);
+        boolean lowerCase = comparator instanceof IgnoreCase;
+        WordTokenizer tokenizer = new WordTokenizer(decoder);
+        CheckpointLog checkpoints = null;
+        boolean complete = false;
 
         try {
-            scanner = new Scanner(file, "latin1");
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] wordsFromText = line.split("\\W");
-                for (String word : wordsFromText) {
-                    if (isWord(word)) {
-                        Word currentWord = new Word(word);
-                        Word existingWord = indexedBST.search(currentWord);
-                        if (existingWord != null) {
-                            existingWord.setFrequency(existingWord.getFrequency() + 1);
-                            existingWord.addToIndex(currentLine);
-                            indexedBST.insert(existingWord);
-                        } else {
-                            currentWord.addToIndex(currentLine);
-                            indexedBST.insert(currentWord);
+            long startOffset = 0;
+            int startLine = 1;
+            /*
+            A build without resume points could never resume, so it would log every word for nothing.
+             */
+            if (checkpointDirectory != null && tokenizer.reportsResumePoints()) {
+                checkpointDirectory.mkdirs();
+                checkpoints = new CheckpointLog(checkpointDirectory, file,
+                        comparator == null ? "natural" : comparator.getClass().getName(), mode, checkpointInterval);
+                indexedBST = recover(checkpoints, comparator, mode);
+                if (indexedBST == null) {
+                    return null;
+                }
+                startOffset = checkpoints.getResumeOffset();
+                startLine = checkpoints.getResumeLine();
+            }
+
+            BST<Word> tree = indexedBST;
+            FrequencyIndexEntry frequencies = frequencyIndexing ? indexFrequencies(tree) : null;
+            CheckpointLog log = checkpoints;
+            tokenizer.tokenize(file, startOffset, startLine, new WordTokenizer.Listener() {
+                @Override
+                public void word(String text, int lineNumber) {
+                    String word = lowerCase ? text.toLowerCase() : text;
+                    if (log != null) {
+                        try {
+                            log.logWord(word, lineNumber);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    addOccurrence(tree, frequencies, word, lineNumber, mode);
+                }
+
+                @Override
+                public void resumePoint(long offset, int lineNumber) {
+                    if (log == null) {
+                        return;
+                    }
+                    try {
+                        if (log.mark(offset, lineNumber)) {
+                            log.checkpoint(tree, offset, lineNumber, mode);
                         }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
                 }
-                currentLine++;
+            });
+            complete = true;
+
+            if (checkpoints != null) {
+                checkpoints.finish();
+                checkpoints = null;
             }
         } catch (FileNotFoundException e) {
             System.err.println("Cannot find the file");
+        } catch (CharacterCodingException e) {
+            System.err.println("Cannot decode the file");
+        } catch (UncheckedIOException e) {
+            /*
+            Thrown by the listener, which writes the log and checkpoints while the file is read.
+             */
+            System.err.println("Cannot write the checkpoint log");
+        } catch (IOException e) {
+            System.err.println(complete ? "Cannot remove the checkpoint log" : "Cannot read the file");
         } finally {
-            if (scanner != null) {
-                scanner.close();
+            if (checkpoints != null) {
+                try {
+                    checkpoints.close();
+                } catch (IOException e) {
+                    System.err.println("Cannot write the checkpoint log");
+                }
             }
         }
 
-        return indexedBST;
+        /*
+        A tree missing the end of the file is not returned as if it were complete.
+         */
+        return complete ? indexedBST : null;
     }
 
     /**
-     * Builds an indexed BST based on order defined by the passed comparator.
+     * Private helper method to rebuild the tree of an interrupted build from its latest checkpoint and log.
+     * A checkpoint or log which cannot be read is discarded, and the build starts over from an empty tree.
      *
-     * @param fileName   : File whose index BST has to be built.
-     * @param comparator : Comparator to be used to compare 2 different words.
-     * @return : An indexed BST.
+     * @param checkpoints : Checkpoints and log of the build.
+     * @param comparator  : Comparator to be used to compare 2 different words, null for natural order.
+     * @param mode        : Whether line numbers are kept, skipped or recorded lazily.
+     * @return : Tree of the words read before the resume point, or null if the checkpoint cannot be discarded.
      */
-    public BST<Word> buildIndex(String fileName, Comparator<Word> comparator) {
+    private BST<Word> recover(CheckpointLog checkpoints, Comparator<Word> comparator, BuildMode mode) {
+        BST<Word> indexedBST = new BST<>(comparator, balancing);
+        try {
+            indexedBST.insertAll(checkpoints.readCheckpoint());
+            checkpoints.replayLog((word, lineNumber) -> addOccurrence(indexedBST, null, word, lineNumber, mode));
+            return indexedBST;
+        } catch (IOException e) {
+            System.err.println("Cannot recover from the checkpoint log, indexing the file from the start");
+        }
+
+        try {
+            checkpoints.discard();
+        } catch (IOException e) {
+            System.err.println("Cannot remove the checkpoint log");
+            return null;
+        }
+        return new BST<>(comparator, balancing);
+    }
+
+    /**
+     * Counts the words of a file approximately in fixed memory, for files too large to index.
+     *
+     * @param fileName   : File whose words have to be counted.
+     * @param comparator : IgnoreCase to count words in lowercase, else null.
+     * @param k          : Number of most frequent words to track.
+     * @param epsilon    : Maximum error of a frequency, as a fraction of the number of words in the file.
+     * @param delta      : Probability of a frequency exceeding that error.
+     * @return : Summary of the most frequent words, or null if the file is empty or could not be read to its end.
+     */
+    public HeavyHitters buildHeavyHitters(String fileName, Comparator<Word> comparator, int k, double epsilon,
+                                          double delta) {
         File file = new File(fileName);
 
         if (file == null || file.length() == 0) {
             return null;
         }
 
-        BST<Word> indexedBST = new BST<>(comparator);
+        HeavyHitters heavyHitters = new HeavyHitters(k, epsilon, delta);
         boolean lowerCase = comparator instanceof IgnoreCase;
-        int currentLine = 1;
-
-        Scanner scanner = null;
+        WordTokenizer tokenizer = new WordTokenizer(decoder);
 
+        /*
+        As with buildIndex, a summary missing the end of the file is not returned as if it were complete.
+         */
         try {
-            scanner = new Scanner(file, "latin1");
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] wordsFromText = line.split("\\W");
-                for (String word : wordsFromText) {
-                    if (isWord(word)) {
-                        Word currentWord = new Word(word);
-
-                        if (lowerCase) {
-                            currentWord.setWord(currentWord.getWord().toLowerCase());
-                        }
-
-                        currentWord.addToIndex(currentLine);
-                        Word existingWord = indexedBST.search(currentWord);
-
-                        if (existingWord != null) {
-                            existingWord.setFrequency(existingWord.getFrequency() + 1);
-                            existingWord.addToIndex(currentLine);
-                            indexedBST.insert(existingWord);
-                        } else {
-                            currentWord.addToIndex(currentLine);
-                            indexedBST.insert(currentWord);
-                        }
-                    }
-                }
-                currentLine++;
-            }
+            tokenizer.tokenize(file, (word, lineNumber) -> heavyHitters.add(lowerCase ? word.toLowerCase() : word));
         } catch (FileNotFoundException e) {
             System.err.println("Cannot find the file");
-        } finally {
-            if (scanner != null) {
-                scanner.close();
-            }
+            return null;
+        } catch (CharacterCodingException e) {
+            System.err.println("Cannot decode the file");
+            return null;
+        } catch (IOException e) {
+            System.err.println("Cannot read the file");
+            return null;
         }
 
-        return indexedBST;
+        return heavyHitters;
     }
 
     /**
@@ -138,9 +318,211 @@ public class Index {
             indexedBST.insert(word);
         }
 
+        if (frequencyIndexing) {
+            indexFrequencies(indexedBST);
+        }
+
         return indexedBST;
     }
 
+    /**
+     * Merges an indexed BST into another using the same order. Words found in both keep a single node,
+     * with their frequencies summed and their line numbers merged. The nodes of the second tree are moved
+     * into the first, leaving the second one empty. Trees ordered by frequency (AlphaFreq, Frequency)
+     * cannot be merged, since summing frequencies would change the order of merged words, and neither can
+     * a tree with itself.
+     *
+     * @param tree  : Indexed BST receiving the words.
+     * @param other : Indexed BST whose words are moved.
+     * @return : The merged indexed BST.
+     */
+    public BST<Word> mergeIndexes(BST<Word> tree, BST<Word> other) {
+        if (tree == null || other == null) {
+            return tree == null ? other : tree;
+        }
+
+        if (orderedByFrequency(tree.comparator())) {
+            throw new IllegalArgumentException("Cannot merge trees ordered by frequency");
+        }
+
+        tree.union(other, Index::mergeWords);
+
+        return tree;
+    }
+
+    /**
+     * Private helper method to merge the frequency and line numbers of a word into an equal one.
+     *
+     * @param word  : Word receiving the frequency and line numbers.
+     * @param other : Word being merged.
+     * @return : The merged word.
+     */
+    private static Word mergeWords(Word word, Word other) {
+        word.setFrequency(word.getFrequency() + other.getFrequency());
+        for (Integer lineNumber : other.getIndex()) {
+            word.addToIndex(lineNumber);
+        }
+        return word;
+    }
+
+    /**
+     * Adds one occurrence of a word on a given line to an indexed BST built by this object,
+     * keeping its frequency index up to date.
+     *
+     * @param tree       : Indexed BST to be updated.
+     * @param text       : Word to be added.
+     * @param lineNumber : Line number the word appears on.
+     */
+    public void addToIndex(BST<Word> tree, String text, int lineNumber) {
+        if (tree == null || !isWord(text)) {
+            return;
+        }
+
+        if (tree.comparator() instanceof IgnoreCase) {
+            text = text.toLowerCase();
+        }
+
+        addOccurrence(tree, frequencyIndexes.get(tree), text, lineNumber, BuildMode.FULL);
+    }
+
+    /**
+     * Adds one occurrence of a word on a given line to an indexed BST through its lookup cache,
+     * so that hot words are found without searching the tree.
+     *
+     * @param cache      : Lookup cache in front of the indexed BST to be updated.
+     * @param text       : Word to be added.
+     * @param lineNumber : Line number the word appears on.
+     */
+    public void addToIndex(LookupCache cache, String text, int lineNumber) {
+        if (cache == null || !isWord(text)) {
+            return;
+        }
+
+        if (cache.getTree().comparator() instanceof IgnoreCase) {
+            text = text.toLowerCase();
+        }
+
+        addOccurrence(cache, frequencyIndexes.get(cache.getTree()), text, lineNumber, BuildMode.FULL);
+    }
+
+    /**
+     * Returns the frequency index of an indexed BST, current with the tree's contents.
+     * Trees without one get one built from their current contents, which is then kept up to date by
+     * further updates made through this object. An index the tree or its words changed behind is rebuilt.
+     *
+     * @param tree : An indexed BST.
+     * @return : Frequency index of the tree.
+     */
+    public FrequencyIndex getFrequencyIndex(BST<Word> tree) {
+        if (tree == null) {
+            return null;
+        }
+
+        FrequencyIndex frequencies = currentFrequencyIndex(tree);
+        if (frequencies == null) {
+            frequencies = indexFrequencies(tree).index;
+        }
+        return frequencies;
+    }
+
+    /**
+     * Private helper method to return the frequency index of a tree, rebuilding it if it is not current.
+     *
+     * @param tree : An indexed BST.
+     * @return : Frequency index of the tree, or null if the tree has none.
+     */
+    private FrequencyIndex currentFrequencyIndex(BST<Word> tree) {
+        FrequencyIndexEntry frequencies = frequencyIndexes.get(tree);
+        if (frequencies == null) {
+            return null;
+        }
+        if (!frequencies.isCurrent(tree)) {
+            frequencies.refresh(tree);
+        }
+        return frequencies.index;
+    }
+
+    /**
+     * Private helper method to build and keep a frequency index of a tree's current contents.
+     *
+     * @param tree : An indexed BST.
+     * @return : Frequency index entry of the tree.
+     */
+    private FrequencyIndexEntry indexFrequencies(BST<Word> tree) {
+        FrequencyIndexEntry frequencies = new FrequencyIndexEntry();
+        frequencies.refresh(tree);
+        frequencyIndexes.put(tree, frequencies);
+        return frequencies;
+    }
+
+    /**
+     * Private helper method to record one occurrence of a word in the tree and its frequency index.
+     *
+     * @param tree        : Indexed BST being built, or a lookup cache in front of it.
+     * @param frequencies : Frequency index entry of the tree, null if the tree has none.
+     * @param text        : Word to be recorded.
+     * @param lineNumber  : Line number the word appears on.
+     * @param mode        : Whether the line number is kept, skipped or recorded lazily.
+     */
+    private void addOccurrence(BSTInterface<Word> tree, FrequencyIndexEntry frequencies, String text, int lineNumber,
+                               BuildMode mode) {
+        BST<Word> indexedBST = null;
+        FrequencyIndex index = null;
+        if (frequencies != null) {
+            indexedBST = tree instanceof LookupCache ? ((LookupCache) tree).getTree() : (BST<Word>) tree;
+            /*
+            An index which is already stale is left alone, it is rebuilt when next read. So is the index of
+            a tree ordered by frequency, whose order stops matching the comparator once frequencies change.
+             */
+            if (frequencies.isCurrent(indexedBST) && !orderedByFrequency(indexedBST.comparator())) {
+                index = frequencies.index;
+            }
+        }
+
+        Word currentWord = new Word(text);
+        Word existingWord = tree.search(currentWord);
+
+        if (existingWord != null) {
+            if (tree instanceof LookupCache) {
+                /*
+                The cache key of trees ordered by frequency changes with it.
+                 */
+                ((LookupCache) tree).invalidate(existingWord);
+            }
+            if (index != null) {
+                index.increment(existingWord);
+            } else {
+                existingWord.setFrequency(existingWord.getFrequency() + 1);
+            }
+        } else {
+            existingWord = currentWord;
+            tree.insert(currentWord);
+            if (index != null) {
+                index.add(currentWord);
+            }
+        }
+
+        if (index != null) {
+            frequencies.stamp(indexedBST);
+        }
+
+        if (mode == BuildMode.FULL) {
+            existingWord.addToIndex(lineNumber);
+        } else if (mode == BuildMode.LAZY_POSTINGS) {
+            existingWord.addToIndexLazily(lineNumber);
+        }
+    }
+
+    /**
+     * Private helper method to check if a comparator orders words by their frequency.
+     *
+     * @param comparator : Comparator of a tree.
+     * @return : true if the comparator is AlphaFreq or Frequency, else false.
+     */
+    private static boolean orderedByFrequency(Comparator<Word> comparator) {
+        return comparator instanceof AlphaFreq || comparator instanceof Frequency;
+    }
+
     /**
      * Returns a sorted list of words from the BST by using the alpha frequency comparator.
      *
@@ -181,6 +563,11 @@ public class Index {
             return null;
         }
 
+        FrequencyIndex frequencies = currentFrequencyIndex(tree);
+        if (frequencies != null) {
+            return frequencies.toList();
+        }
+
         ArrayList<Word> sortedFrequencyList = new ArrayList<>();
         Iterator<Word> bstIterator = tree.iterator();
 
@@ -193,6 +580,20 @@ public class Index {
         return sortedFrequencyList;
     }
 
+    /**
+     * Returns the words tracked by an approximate summary, sorted by their estimated frequency.
+     *
+     * @param heavyHitters : Approximate summary of a file.
+     * @return : List of word objects sorted by frequency.
+     */
+    public ArrayList<Word> sortByFrequency(HeavyHitters heavyHitters) {
+        if (heavyHitters == null) {
+            return null;
+        }
+
+        return heavyHitters.sortByFrequency();
+    }
+
     /**
      * Private helper method to find maximum frequency value in an array list.
      *
@@ -221,6 +622,11 @@ public class Index {
             return null;
         }
 
+        FrequencyIndex frequencies = currentFrequencyIndex(tree);
+        if (frequencies != null) {
+            return frequencies.getHighest();
+        }
+
         ArrayList<Word> sortedFrequencyList = sortByFrequency(tree);
         int maxFrequency = getMaxFrequency(sortedFrequencyList);
 
@@ -237,6 +643,20 @@ public class Index {
 
     }
 
+    /**
+     * Returns the words of the highest estimated frequency in an approximate summary.
+     *
+     * @param heavyHitters : Approximate summary of a file.
+     * @return : List of word objects with highest frequency.
+     */
+    public ArrayList<Word> getHighestFrequency(HeavyHitters heavyHitters) {
+        if (heavyHitters == null) {
+            return null;
+        }
+
+        return heavyHitters.getHighestFrequency();
+    }
+
     /**
      * Checks if the text is a valid word.
      *
@@ -248,7 +668,59 @@ public class Index {
         if (text == null) {
             return false;
         }
-        return text.matches("[a-zA-Z]+");
+        return WordTokenizer.isWord(text);
+    }
+
+    /**
+     * Frequency index of a tree, with the changes it was last known to be current with.
+     */
+    private static class FrequencyIndexEntry {
+        /**
+         * Frequency index of the tree.
+         */
+        private FrequencyIndex index;
+        /**
+         * Modification count of the tree when the index was last current.
+         */
+        private int modificationCount;
+        /**
+         * Number of frequency changes made to any word when the index was last current.
+         */
+        private long frequencyChanges;
+
+        /**
+         * Rebuilds the index from the tree's current contents.
+         *
+         * @param tree : Indexed BST of the index.
+         */
+        void refresh(BST<Word> tree) {
+            /*
+            Words of a tree ordered by frequency are kept in the order the tree yields them.
+             */
+            index = new FrequencyIndex(orderedByFrequency(tree.comparator()) ? (o1, o2) -> 0 : tree.comparator(),
+                    tree);
+            stamp(tree);
+        }
+
+        /**
+         * Records that the index is current with the tree and its words.
+         *
+         * @param tree : Indexed BST of the index.
+         */
+        void stamp(BST<Word> tree) {
+            modificationCount = tree.getModificationCount();
+            frequencyChanges = Word.getFrequencyChanges();
+        }
+
+        /**
+         * Checks that neither the tree nor the frequency of any word changed since the index was last current.
+         *
+         * @param tree : Indexed BST of the index.
+         * @return : true if the index is current, else false.
+         */
+        boolean isCurrent(BST<Word> tree) {
+            return modificationCount == tree.getModificationCount() && frequencyChanges == Word.getFrequencyChanges();
+        }
     }
 
 }
@@ -0,0 +1,233 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Bounded lookup cache in front of an indexed BST, evicting the least recently used entry once full.
+ * Lookups that miss the tree are cached as well, and every insert through the cache invalidates the
+ * entry it could change. Nodes added to the tree without going through the cache clear it on the next
+ * lookup.
+ * <p>
+ * Cached values are the tree's own word objects, so frequency and line number updates made to them
+ * are seen through the cache. Trees ordered by frequency (AlphaFreq, Frequency) use the frequency as
+ * part of the key, so a word must be invalidated before its frequency is changed.
+ */
+public class LookupCache implements Iterable<Word>, BSTInterface<Word> {
+    /**
+     * Indexed BST behind the cache.
+     */
+    private BST<Word> tree;
+    /**
+     * Maximum number of cached lookups.
+     */
+    private int capacity;
+    /**
+     * Function mapping a word to a key which is equal exactly when the tree's comparator returns 0.
+     */
+    private Function<Word, Object> keyFunction;
+    /**
+     * Cached lookups in access order, a null value records a word which is not in the tree.
+     */
+    private LinkedHashMap<Object, Word> entries;
+    /**
+     * Modification count of the tree when the cached lookups were made.
+     */
+    private int expectedModificationCount;
+    /**
+     * Number of lookups answered by the cache.
+     */
+    private long hits;
+    /**
+     * Number of lookups which had to search the tree.
+     */
+    private long misses;
+    /**
+     * Number of entries evicted to stay within capacity.
+     */
+    private long evictions;
+
+    public LookupCache(BST<Word> tree, int capacity) {
+        this(tree, capacity, keyFunction(tree.comparator()));
+    }
+
+    public LookupCache(BST<Word> tree, int capacity, Function<Word, Object> keyFunction) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.tree = tree;
+        this.capacity = capacity;
+        this.keyFunction = keyFunction;
+        this.expectedModificationCount = tree.getModificationCount();
+        this.entries = new LinkedHashMap<Object, Word>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Word> eldest) {
+                if (size() > LookupCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a key function matching the equality of one of the built in comparators.
+     *
+     * @param comparator : Comparator of the tree, null for natural order.
+     * @return : Function mapping a word to its cache key.
+     */
+    private static Function<Word, Object> keyFunction(Comparator<Word> comparator) {
+        if (comparator == null) {
+            return Word::getWord;
+        }
+        if (comparator instanceof IgnoreCase) {
+            return word -> foldCase(word.getWord());
+        }
+        if (comparator instanceof AlphaFreq) {
+            return word -> word.getFrequency() + " " + word.getWord();
+        }
+        if (comparator instanceof Frequency) {
+            return Word::getFrequency;
+        }
+        throw new IllegalArgumentException("No cache key known for comparator " + comparator.getClass().getName());
+    }
+
+    /**
+     * Folds the case of every code point the same way String.compareToIgnoreCase does, which folds
+     * supplementary characters as whole code points rather than as surrogate chars.
+     *
+     * @param text : String to be folded.
+     * @return : Case folded string.
+     */
+    private static String foldCase(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)));
+            i += Character.charCount(codePoint);
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Returns the tree behind the cache.
+     *
+     * @return : Indexed BST.
+     */
+    public BST<Word> getTree() {
+        return tree;
+    }
+
+    /**
+     * Searches for a word, answering from the cache when possible.
+     *
+     * @param toSearch Object value to search.
+     * @return : Word in the tree if found, else null.
+     */
+    @Override
+    public Word search(Word toSearch) {
+        if (tree.getModificationCount() != expectedModificationCount) {
+            /*
+            The tree was changed without going through the cache, any cached lookup may be stale.
+             */
+            clear();
+        }
+
+        Object key = keyFunction.apply(toSearch);
+        Word cached = entries.get(key);
+        if (cached != null || entries.containsKey(key)) {
+            hits++;
+            return cached;
+        }
+
+        misses++;
+        Word found = tree.search(toSearch);
+        entries.put(key, found);
+        return found;
+    }
+
+    /**
+     * Inserts a word in the tree and invalidates its cached lookup.
+     *
+     * @param toInsert Object value to be inserted.
+     */
+    @Override
+    public void insert(Word toInsert) {
+        boolean upToDate = tree.getModificationCount() == expectedModificationCount;
+        tree.insert(toInsert);
+        invalidate(toInsert);
+        if (upToDate) {
+            expectedModificationCount = tree.getModificationCount();
+        }
+    }
+
+    /**
+     * Removes the cached lookup of a word. Must be called before changing a word's
+     * frequency when the tree is ordered by frequency.
+     *
+     * @param word : Word whose lookup has to be forgotten.
+     */
+    public void invalidate(Word word) {
+        entries.remove(keyFunction.apply(word));
+    }
+
+    /**
+     * Removes every cached lookup, for use after the tree was changed without going through the cache.
+     */
+    public void clear() {
+        entries.clear();
+        expectedModificationCount = tree.getModificationCount();
+    }
+
+    /**
+     * Returns the number of lookups answered by the cache.
+     *
+     * @return : Number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which had to search the tree.
+     *
+     * @return : Number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within capacity.
+     *
+     * @return : Number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of cached lookups.
+     *
+     * @return : Number of entries in the cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns iterator of the tree behind the cache.
+     *
+     * @return : Iterator object.
+     */
+    @Override
+    public Iterator<Word> iterator() {
+        return tree.iterator();
+    }
+}
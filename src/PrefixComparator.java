@@ -0,0 +1,49 @@
+import java.util.Comparator;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Comparator which can summarize a value as an 8 byte key prefix preserving its order.
+ * BST keeps the prefix of each node's data in the node, and only calls compare when the
+ * prefixes of two values are equal.
+ *
+ * @param <T> : Type of values compared.
+ */
+public interface PrefixComparator<T> extends Comparator<T> {
+
+    /**
+     * Returns the key prefix of a value. Whenever Long.compareUnsigned of the prefixes of 2 values
+     * is not 0, compare of the values has the same sign. Equal prefixes say nothing.
+     *
+     * @param value : Value to be summarized.
+     * @return : Key prefix of the value.
+     */
+    long prefix(T value);
+
+    /**
+     * Packs the first 8 characters of a string into a key prefix ordered like String.compareTo,
+     * one byte per character. A character which does not fit a byte is stored as 0xFF and ends
+     * the prefix, so that strings only differing after it get equal prefixes.
+     *
+     * @param text       : String to be packed.
+     * @param ignoreCase : Whether characters are folded the way String.compareToIgnoreCase does.
+     * @return : Key prefix of the string.
+     */
+    static long pack(String text, boolean ignoreCase) {
+        long prefix = 0;
+        int length = Math.min(text.length(), Long.BYTES);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (ignoreCase) {
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            if (c >= 0xFF) {
+                return prefix | (0xFFL << (8 * (Long.BYTES - 1 - i)));
+            }
+            prefix |= (long) c << (8 * (Long.BYTES - 1 - i));
+        }
+        return prefix;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Comparable value which can summarize itself as an 8 byte key prefix preserving its natural order.
+ * BST uses it the same way as PrefixComparator when it has no comparator.
+ */
+public interface PrefixedKey {
+
+    /**
+     * Returns the key prefix of this value. Whenever Long.compareUnsigned of the prefixes of 2 values
+     * is not 0, compareTo of the values has the same sign. Equal prefixes say nothing.
+     *
+     * @return : Key prefix of the value.
+     */
+    long keyPrefix();
+}
@@ -0,0 +1,280 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Local HTTP server answering queries on an index tree built once at startup.
+ * <p>
+ * Every request is handled on its own virtual thread when the JVM supports them (JDK 21 and later),
+ * and on a fixed pool of a few threads per processor otherwise. The line numbers of every word are
+ * materialized before serving, so that queries only read the tree and its words and run concurrently,
+ * except searches of a splay tree, which take turns. Endpoints, all answering plain text in the same format as Word.toString():
+ * <ul>
+ * <li>GET /search?word=a&amp;word=b : one line per word, "word frequency [lines]", frequency 0 if not found.</li>
+ * <li>POST /search : same as above, words given in the body separated by white space.</li>
+ * <li>GET /postings?word=a : one line per word, "word [lines]".</li>
+ * <li>GET /top?k=10 : the k most frequent words, one per line, all words of the highest frequency if k is missing.
+ * A k which is not a number, or is negative, is answered with 400.</li>
+ * </ul>
+ */
+public class QueryServer {
+    /**
+     * Number of request threads per processor when virtual threads are not available.
+     */
+    private static final int THREADS_PER_PROCESSOR = 4;
+    /**
+     * Indexed BST being queried.
+     */
+    private BST<Word> tree;
+    /**
+     * Words of the tree sorted by frequency, fetched once since Index is not safe for concurrent use.
+     */
+    private ArrayList<Word> sortedFrequencyList;
+    /**
+     * Whether query words have to be lowercased to match the tree.
+     */
+    private boolean lowerCase;
+    /**
+     * Underlying HTTP server, null until started.
+     */
+    private HttpServer server;
+    /**
+     * Executor running request handlers.
+     */
+    private ExecutorService executor;
+
+    public QueryServer(Index index, BST<Word> tree) {
+        this.tree = tree;
+        this.sortedFrequencyList = index.sortByFrequency(tree);
+        this.lowerCase = tree.comparator() instanceof IgnoreCase;
+
+        /*
+        Word.getIndex creates the set of line numbers on first use, or fills it from lazily recorded ones,
+        so it is called once for every word here rather than concurrently by requests.
+         */
+        for (Word word : tree) {
+            word.getIndex();
+        }
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port : Port to listen on, 0 for any free port.
+     * @throws IOException : If the server socket cannot be bound.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/search", exchange -> handle(exchange, "search"));
+        server.createContext("/postings", exchange -> handle(exchange, "postings"));
+        server.createContext("/top", exchange -> handle(exchange, "top"));
+        server.start();
+    }
+
+    /**
+     * Stops the server, letting running requests finish for up to a second.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return : Port number.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task if the JVM has them, else a fixed thread pool,
+     * so that a burst of requests queues up instead of starting a thread each.
+     *
+     * @return : Executor for request handlers.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Answers a single request.
+     *
+     * @param exchange : Request and response.
+     * @param endpoint : Name of the endpoint being queried.
+     * @throws IOException : If the response cannot be written.
+     */
+    private void handle(HttpExchange exchange, String endpoint) throws IOException {
+        try {
+            ArrayList<String> words = new ArrayList<>();
+            String k = null;
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int separator = parameter.indexOf('=');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    String name = parameter.substring(0, separator);
+                    String value = URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+                    if (name.equals("word")) {
+                        words.add(value);
+                    } else if (name.equals("k")) {
+                        k = value;
+                    }
+                }
+            }
+            if (exchange.getRequestMethod().equals("POST")) {
+                for (String word : readBody(exchange.getRequestBody()).split("\\s+")) {
+                    if (!word.isEmpty()) {
+                        words.add(word);
+                    }
+                }
+            }
+
+            StringBuilder response = new StringBuilder();
+            if (endpoint.equals("top")) {
+                int count = k == null ? -1 : Integer.parseInt(k);
+                if (count < 0 && k != null) {
+                    send(exchange, 400, "k must not be negative\n");
+                    return;
+                }
+                top(count, response);
+            } else {
+                for (String word : words) {
+                    lookup(word, endpoint.equals("postings"), response);
+                }
+            }
+            send(exchange, 200, response.toString());
+        } catch (NumberFormatException e) {
+            send(exchange, 400, "k must be a number\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Looks up a word and appends its line to the response.
+     *
+     * @param text         : Word to look up.
+     * @param postingsOnly : Whether to leave out the frequency.
+     * @param response     : Response being built.
+     */
+    private void lookup(String text, boolean postingsOnly, StringBuilder response) {
+        Word key = new Word(lowerCase ? text.toLowerCase() : text);
+        Word found;
+        if (tree.balancing() == BST.Balancing.SPLAY) {
+            /*
+            Searching a splay tree rotates it, so searches of concurrent requests take turns.
+             */
+            synchronized (tree) {
+                found = tree.search(key);
+            }
+        } else {
+            found = tree.search(key);
+        }
+        response.append(text).append(' ');
+        if (!postingsOnly) {
+            response.append(found == null ? 0 : found.getFrequency()).append(' ');
+        }
+        response.append(found == null ? "[]" : found.getIndex()).append('\n');
+    }
+
+    /**
+     * Appends the most frequent words to the response.
+     *
+     * @param k        : Number of words, or -1 for all words of the highest frequency.
+     * @param response : Response being built.
+     */
+    private void top(int k, StringBuilder response) {
+        for (int i = 0; i < sortedFrequencyList.size(); i++) {
+            Word word = sortedFrequencyList.get(i);
+            if (k < 0 ? word.getFrequency() != sortedFrequencyList.get(0).getFrequency() : i == k) {
+                break;
+            }
+            response.append(word).append('\n');
+        }
+    }
+
+    /**
+     * Reads a request body as UTF-8 text.
+     *
+     * @param body : Request body.
+     * @return : Body text.
+     * @throws IOException : If the body cannot be read.
+     */
+    private static String readBody(InputStream body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        body.transferTo(bytes);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends a plain text response.
+     *
+     * @param exchange : Request and response.
+     * @param status   : HTTP status code.
+     * @param text     : Response body.
+     * @throws IOException : If the response cannot be written.
+     */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Builds an index tree from a file and serves it until the JVM is stopped.
+     * Usage: QueryServer file [port] [ignore-case]
+     *
+     * @param args arguments
+     * @throws IOException IOException might be thrown
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: QueryServer file [port] [ignore-case]");
+            return;
+        }
+
+        Index index = new Index();
+        boolean ignoreCase = args.length > 2 && args[2].equals("ignore-case");
+        BST<Word> tree = ignoreCase ? index.buildIndex(args[0], new IgnoreCase()) : index.buildIndex(args[0]);
+        if (tree == null) {
+            System.err.println("Cannot index the file");
+            return;
+        }
+
+        QueryServer queryServer = new QueryServer(index, tree);
+        queryServer.start(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        System.out.println("Serving " + args[0] + " on http://127.0.0.1:" + queryServer.getPort());
+    }
+}
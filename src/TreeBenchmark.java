@@ -0,0 +1,163 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Benchmark comparing the balancings of BST on the word stream of a real text.
+ * Each tree is built the way Index builds a counts-only index, searching every word and inserting
+ * it when missing, and then every word of the text is searched once more. Timings are the best of
+ * several rounds, comparisons are counted on the first round.
+ * <p>
+ * A second table compares searches of trees whose order provides key prefixes with searches of the same
+ * trees ordered by an equivalent comparator which does not.
+ */
+public class TreeBenchmark {
+    /**
+     * Number of timed rounds per balancing.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Comparator in the word's natural order which counts how often it is called.
+     */
+    private static class CountingComparator implements Comparator<Word> {
+        /**
+         * Number of comparisons made.
+         */
+        private long comparisons;
+
+        @Override
+        public int compare(Word o1, Word o2) {
+            comparisons++;
+            return o1.getWord().compareTo(o2.getWord());
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     * Usage: TreeBenchmark [file], test.txt by default. Larger texts give more meaningful timings.
+     *
+     * @param args arguments
+     * @throws IOException IOException might be thrown
+     */
+    public static void main(String[] args) throws IOException {
+        String inputFile = args.length > 0 ? args[0] : "test.txt";
+        ArrayList<String> words = new ArrayList<>();
+        new WordTokenizer().tokenize(new File(inputFile), (word, lineNumber) -> words.add(word));
+        System.out.println(words.size() + " words read from " + inputFile);
+        System.out.println();
+        System.out.printf("%-8s %10s %12s %10s %12s %8s%n", "tree", "build ms", "cmp/word", "search ms",
+                "ns/search", "height");
+
+        for (BST.Balancing balancing : BST.Balancing.values()) {
+            long bestBuild = Long.MAX_VALUE;
+            long bestSearch = Long.MAX_VALUE;
+            long buildComparisons = 0;
+            int height = 0;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                CountingComparator comparator = new CountingComparator();
+                BST<Word> tree = new BST<>(comparator, balancing);
+
+                long start = System.nanoTime();
+                for (String text : words) {
+                    Word existingWord = tree.search(new Word(text));
+                    if (existingWord != null) {
+                        existingWord.setFrequency(existingWord.getFrequency() + 1);
+                    } else {
+                        tree.insert(new Word(text));
+                    }
+                }
+                bestBuild = Math.min(bestBuild, System.nanoTime() - start);
+                if (round == 0) {
+                    buildComparisons = comparator.comparisons;
+                    height = tree.getHeight();
+                }
+
+                Word[] keys = new Word[words.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = new Word(words.get(i));
+                }
+                int found = 0;
+                start = System.nanoTime();
+                for (Word key : keys) {
+                    if (tree.search(key) != null) {
+                        found++;
+                    }
+                }
+                bestSearch = Math.min(bestSearch, System.nanoTime() - start);
+                if (found != keys.length) {
+                    throw new IllegalStateException("Lost words in " + balancing + " tree");
+                }
+            }
+
+            System.out.printf("%-8s %10.1f %12.2f %10.1f %12.1f %8d%n", balancing, bestBuild / 1e6,
+                    (double) buildComparisons / words.size(), bestSearch / 1e6,
+                    (double) bestSearch / words.size(), height);
+        }
+
+        System.out.println();
+        System.out.printf("%-12s %14s %14s%n", "order", "prefix ns", "no prefix ns");
+        Comparator<Word> natural = (o1, o2) -> o1.getWord().compareTo(o2.getWord());
+        Comparator<Word> ignoreCase = (o1, o2) -> o1.getWord().compareToIgnoreCase(o2.getWord());
+        printPrefixRow("natural", words, null, natural);
+        printPrefixRow("ignore-case", words, new IgnoreCase(), ignoreCase);
+    }
+
+    /**
+     * Prints the best time per search of every word in AVL trees of the words, one ordered by a comparator
+     * providing key prefixes and one by an equivalent comparator which does not.
+     *
+     * @param name       : Name of the order.
+     * @param words      : Words of the text.
+     * @param prefixed   : Comparator providing key prefixes, null for the word's natural order.
+     * @param unprefixed : Equivalent comparator without key prefixes.
+     */
+    private static void printPrefixRow(String name, ArrayList<String> words, Comparator<Word> prefixed,
+                                       Comparator<Word> unprefixed) {
+        Word[] keys = new Word[words.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Word(words.get(i));
+        }
+        BST<Word> prefixedTree = new BST<>(prefixed, BST.Balancing.AVL);
+        BST<Word> unprefixedTree = new BST<>(unprefixed, BST.Balancing.AVL);
+        for (Word key : keys) {
+            prefixedTree.insert(key);
+            unprefixedTree.insert(key);
+        }
+
+        /*
+        Rounds alternate between the trees, so both see the same JIT state.
+         */
+        long bestPrefixed = Long.MAX_VALUE;
+        long bestUnprefixed = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            bestPrefixed = Math.min(bestPrefixed, searchAll(prefixedTree, keys));
+            bestUnprefixed = Math.min(bestUnprefixed, searchAll(unprefixedTree, keys));
+        }
+        System.out.printf("%-12s %14.1f %14.1f%n", name, (double) bestPrefixed / keys.length,
+                (double) bestUnprefixed / keys.length);
+    }
+
+    /**
+     * Searches a tree for every key.
+     *
+     * @param tree : Tree holding all the keys.
+     * @param keys : Keys to be searched for.
+     * @return : Time taken in nanoseconds.
+     */
+    private static long searchAll(BST<Word> tree, Word[] keys) {
+        long start = System.nanoTime();
+        for (Word key : keys) {
+            if (tree.search(key) == null) {
+                throw new IllegalStateException("Lost " + key.getWord());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,5 +1,7 @@
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author : Arkesh Rath
@@ -8,16 +10,29 @@ import java.util.Set;
 /**
  * Word class holding value, frequency and line numbers that the word appears in.
  */
-public class Word implements Comparable<Word> {
+public class Word implements Comparable<Word>, PrefixedKey {
+
+    /**
+     * Number of frequency changes made to any word, so that frequency indexes can tell whether they are current.
+     */
+    private static final AtomicLong FREQUENCY_CHANGES = new AtomicLong();
 
     /**
      * Value of the word.
      */
     private String word;
     /**
-     * Set of line numbers, the word appears on.
+     * Set of line numbers, the word appears on. Created when first needed.
      */
     private Set<Integer> index;
+    /**
+     * Line numbers recorded lazily and not yet added to the index.
+     */
+    private int[] pendingLines;
+    /**
+     * Number of line numbers held in pendingLines.
+     */
+    private int pendingCount;
     /**
      * Frequency of current word.
      */
@@ -25,8 +40,10 @@ public class Word implements Comparable<Word> {
 
     public Word(String currentWord) {
         setWord(currentWord);
-        setFrequency(1);
-        index = new HashSet<>();
+        /*
+        A new word belongs to no tree yet, so it does not count as a frequency change.
+         */
+        this.frequency = 1;
     }
 
     /**
@@ -63,6 +80,16 @@ public class Word implements Comparable<Word> {
      */
     public void setFrequency(int currentFrequency) {
         this.frequency = currentFrequency;
+        FREQUENCY_CHANGES.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of frequency changes made to any word so far.
+     *
+     * @return : Number of frequency changes.
+     */
+    public static long getFrequencyChanges() {
+        return FREQUENCY_CHANGES.get();
     }
 
     /**
@@ -71,18 +98,73 @@ public class Word implements Comparable<Word> {
      * @param lineNumber : Line Number to be added.
      */
     public void addToIndex(Integer lineNumber) {
-        index.add(Integer.valueOf(lineNumber));
+        getIndex().add(Integer.valueOf(lineNumber));
     }
 
     /**
-     * Returns set of line numbers for given word.
+     * Records a line number without adding it to the word's index yet.
+     * Line numbers are expected in increasing order, so repeats of the last one are dropped.
+     *
+     * @param lineNumber : Line Number to be recorded.
+     */
+    public void addToIndexLazily(int lineNumber) {
+        if (pendingLines == null) {
+            pendingLines = new int[2];
+        } else if (pendingCount > 0 && pendingLines[pendingCount - 1] == lineNumber) {
+            return;
+        } else if (pendingCount == pendingLines.length) {
+            pendingLines = Arrays.copyOf(pendingLines, pendingCount * 2);
+        }
+        pendingLines[pendingCount++] = lineNumber;
+    }
+
+    /**
+     * Returns set of line numbers for given word, adding any lazily recorded ones first.
      *
      * @return : Set of line numbers.
      */
     public Set<Integer> getIndex() {
+        if (index == null) {
+            index = new HashSet<>();
+        }
+        if (pendingLines != null) {
+            for (int i = 0; i < pendingCount; i++) {
+                index.add(pendingLines[i]);
+            }
+            pendingLines = null;
+            pendingCount = 0;
+        }
         return index;
     }
 
+    /**
+     * Returns the line numbers of the word in increasing order, including lazily recorded ones,
+     * without adding those to the index.
+     *
+     * @return : Array of distinct line numbers.
+     */
+    public int[] getLineNumbers() {
+        int[] lines = new int[(index == null ? 0 : index.size()) + pendingCount];
+        int count = 0;
+        if (index != null) {
+            for (Integer line : index) {
+                lines[count++] = line;
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            lines[count++] = pendingLines[i];
+        }
+        Arrays.sort(lines);
+
+        int distinct = 0;
+        for (int line : lines) {
+            if (distinct == 0 || lines[distinct - 1] != line) {
+                lines[distinct++] = line;
+            }
+        }
+        return distinct == lines.length ? lines : Arrays.copyOf(lines, distinct);
+    }
+
 
     /**
      * Custom comparator for the class Word.
@@ -95,6 +177,16 @@ public class Word implements Comparable<Word> {
         return this.getWord().compareTo(o.getWord());
     }
 
+    /**
+     * Returns the key prefix of the word's string value.
+     *
+     * @return : Key prefix of the word.
+     */
+    @Override
+    public long keyPrefix() {
+        return PrefixComparator.pack(word, false);
+    }
+
     /**
      * Return string representation of current word object.
      *
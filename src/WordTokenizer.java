@@ -0,0 +1,529 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author : Arkesh Rath
+ */
+
+/**
+ * Streaming tokenizer which splits a file into words and the line numbers they appear on.
+ * The file is read through fixed size buffers and decoded with the given decoder, so memory use
+ * does not depend on the file's size. For charsets which encode ASCII as single bytes, runs of
+ * ASCII bytes are tokenized straight from the byte buffer, eight bytes are checked at a time for
+ * the end of the run, and only the remaining bytes go through the decoder.
+ * <p>
+ * A token is a run of letters, digits and underscores, and it is only reported when all its
+ * characters are letters (or combining marks), so ASCII text is split exactly as "\W" did,
+ * while letters outside [a-zA-Z] are kept as part of words.
+ */
+public class WordTokenizer {
+    /**
+     * Receives the words found by the tokenizer.
+     */
+    public interface Listener {
+        /**
+         * Called for every word, in the order they appear in the file.
+         *
+         * @param text       : The word.
+         * @param lineNumber : Line number the word appears on, starting at 1.
+         */
+        void word(String text, int lineNumber);
+
+        /**
+         * Called after a line feed read on the ASCII fast path, with the position tokenizing can be
+         * resumed from to get the rest of the file's words. Never called for charsets without the fast
+         * path, see reportsResumePoints.
+         *
+         * @param offset     : Byte offset in the file just after the line feed.
+         * @param lineNumber : Line number starting at that offset.
+         */
+        default void resumePoint(long offset, int lineNumber) {
+        }
+    }
+
+    /**
+     * Size in bytes of the read buffer, and in chars of the decode buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Mask of the high bit of each byte in a long.
+     */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    /**
+     * View of a byte array as longs, used to check eight bytes at a time.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    /**
+     * Class of each ASCII character, 0 for separators.
+     */
+    private static final byte[] ASCII_CLASS = new byte[128];
+    /**
+     * ASCII class of letters.
+     */
+    private static final byte LETTER = 1;
+    /**
+     * ASCII class of digits and underscore, which are part of a token but not of a word.
+     */
+    private static final byte NON_LETTER = 2;
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            ASCII_CLASS[c] = LETTER;
+            ASCII_CLASS[Character.toUpperCase(c)] = LETTER;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            ASCII_CLASS[c] = NON_LETTER;
+        }
+        ASCII_CLASS['_'] = NON_LETTER;
+    }
+
+    /**
+     * Decoder for the file's charset.
+     */
+    private CharsetDecoder decoder;
+    /**
+     * Whether ASCII runs can be read straight from the bytes.
+     */
+    private boolean asciiFastPath;
+
+    /**
+     * Listener receiving words of the current file.
+     */
+    private Listener listener;
+    /**
+     * Current line number.
+     */
+    private int currentLine;
+    /**
+     * Byte offset in the file of the start of the read buffer.
+     */
+    private long bufferOffset;
+    /**
+     * Part of the current token found in previous segments.
+     */
+    private StringBuilder token = new StringBuilder();
+    /**
+     * Whether a token is in progress.
+     */
+    private boolean inToken;
+    /**
+     * Whether the token in progress only holds letters so far.
+     */
+    private boolean tokenIsWord;
+    /**
+     * Whether the previous character was a carriage return, so a following line feed ends no new line.
+     */
+    private boolean afterCarriageReturn;
+    /**
+     * High surrogate waiting for its pair from the next segment, or 0.
+     */
+    private char pendingHighSurrogate;
+
+    public WordTokenizer() {
+        this(StandardCharsets.ISO_8859_1);
+    }
+
+    public WordTokenizer(Charset charset) {
+        this(charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    public WordTokenizer(CharsetDecoder decoder) {
+        this.decoder = decoder;
+        this.asciiFastPath = isAsciiCompatible(decoder.charset());
+    }
+
+    /**
+     * Checks if the listener gets resume points. The position of a decoded character in the file is not
+     * known, and decoders of charsets like UTF-16 keep state from the start of the file, so resume points
+     * are only found on the ASCII fast path.
+     *
+     * @return : true if resume points are reported, else false.
+     */
+    public boolean reportsResumePoints() {
+        return asciiFastPath;
+    }
+
+    /**
+     * Checks if a charset encodes every ASCII character as the same single byte.
+     *
+     * @param charset : Charset to be checked.
+     * @return : true if ASCII bytes can be read without decoding, else false.
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name();
+        return name.equals("US-ASCII") || name.equals("UTF-8") || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125");
+    }
+
+    /**
+     * Checks if the text is a word, that is, a non empty run of letters.
+     *
+     * @param text : String to be validated.
+     * @return : true if text is valid, else false.
+     */
+    public static boolean isWord(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            if (!isLetter(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a code point can be part of a word.
+     *
+     * @param codePoint : Code point to be checked.
+     * @return : true for letters and combining marks.
+     */
+    private static boolean isLetter(int codePoint) {
+        if (codePoint < 128) {
+            return ASCII_CLASS[codePoint] == LETTER;
+        }
+        if (Character.isLetter(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * Checks if a code point is part of a token.
+     *
+     * @param codePoint : Code point to be checked.
+     * @return : true for letters, digits, underscore and combining marks.
+     */
+    private static boolean isTokenPart(int codePoint) {
+        if (codePoint < 128) {
+            return ASCII_CLASS[codePoint] != 0;
+        }
+        return isLetter(codePoint) || Character.isDigit(codePoint);
+    }
+
+    /**
+     * Reads a file and reports each of its words to the listener.
+     *
+     * @param file     : File to be tokenized.
+     * @param listener : Listener receiving the words.
+     * @throws IOException : If the file cannot be read.
+     */
+    public void tokenize(File file, Listener listener) throws IOException {
+        tokenize(file, 0, 1, listener);
+    }
+
+    /**
+     * Reads a file from a resume point and reports each of its remaining words to the listener.
+     *
+     * @param file        : File to be tokenized.
+     * @param startOffset : Byte offset to start reading at, as given by Listener.resumePoint.
+     * @param startLine   : Line number starting at that offset.
+     * @param listener    : Listener receiving the words.
+     * @throws IOException : If the file cannot be read, or a decoder reporting errors meets malformed input.
+     */
+    public void tokenize(File file, long startOffset, int startLine, Listener listener) throws IOException {
+        this.listener = listener;
+        currentLine = startLine;
+        token.setLength(0);
+        inToken = false;
+        afterCarriageReturn = false;
+        pendingHighSurrogate = 0;
+        decoder.reset();
+
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            channel.position(startOffset);
+            long readOffset = startOffset;
+            int read;
+            while ((read = channel.read(bytes)) != -1) {
+                readOffset += read;
+                bytes.flip();
+                bufferOffset = readOffset - bytes.limit();
+                processBytes(bytes, chars);
+                bytes.compact();
+            }
+            bytes.flip();
+            decode(bytes, chars, true);
+            decoder.flush(chars);
+            drain(chars);
+            if (pendingHighSurrogate != 0) {
+                processCodePoint(pendingHighSurrogate);
+                pendingHighSurrogate = 0;
+            }
+            endToken();
+        } finally {
+            this.listener = null;
+        }
+    }
+
+    /**
+     * Tokenizes the bytes of a buffer, leaving an incomplete character at its end unread.
+     *
+     * @param bytes : Buffer of bytes read from the file.
+     * @param chars : Buffer to decode into.
+     * @throws CharacterCodingException : If the decoder reports malformed or unmappable input.
+     */
+    private void processBytes(ByteBuffer bytes, CharBuffer chars) throws CharacterCodingException {
+        if (!asciiFastPath) {
+            decode(bytes, chars, false);
+            return;
+        }
+
+        byte[] array = bytes.array();
+        int limit = bytes.limit();
+        int position = bytes.position();
+
+        while (position < limit) {
+            int asciiEnd = asciiRunEnd(array, position, limit);
+            if (asciiEnd > position) {
+                processAscii(array, position, asciiEnd);
+                position = asciiEnd;
+                continue;
+            }
+
+            int runEnd = position + 1;
+            while (runEnd < limit && array[runEnd] < 0) {
+                runEnd++;
+            }
+            bytes.limit(runEnd);
+            bytes.position(position);
+            decode(bytes, chars, false);
+            /*
+            A sequence cut short by an ASCII byte is malformed, let the decoder see that byte to report it.
+             */
+            while (bytes.position() < runEnd && runEnd < limit) {
+                runEnd++;
+                bytes.limit(runEnd);
+                decode(bytes, chars, false);
+            }
+            bytes.limit(limit);
+            position = bytes.position();
+            if (position < runEnd) {
+                /*
+                Incomplete character at the end of the buffer, it is completed by the next read.
+                 */
+                break;
+            }
+        }
+        bytes.position(position);
+    }
+
+    /**
+     * Finds the end of a run of ASCII bytes, checking eight bytes at a time.
+     *
+     * @param array : Bytes to be scanned.
+     * @param from  : First byte of the run.
+     * @param to    : End of the bytes to be scanned.
+     * @return : Index of the first non ASCII byte, or to.
+     */
+    private static int asciiRunEnd(byte[] array, int from, int to) {
+        int i = from;
+        while (i + Long.BYTES <= to) {
+            long block = (long) LONGS.get(array, i);
+            if ((block & HIGH_BITS) != 0) {
+                return i + (Long.numberOfTrailingZeros(block & HIGH_BITS) >>> 3);
+            }
+            i += Long.BYTES;
+        }
+        while (i < to && array[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Tokenizes a run of ASCII bytes, creating words straight from the bytes.
+     *
+     * @param array : Bytes read from the file.
+     * @param from  : First byte of the run.
+     * @param to    : End of the run.
+     */
+    private void processAscii(byte[] array, int from, int to) {
+        if (pendingHighSurrogate != 0) {
+            processCodePoint(pendingHighSurrogate);
+            pendingHighSurrogate = 0;
+        }
+
+        int tokenStart = inToken ? from : -1;
+        for (int i = from; i < to; i++) {
+            int c = array[i];
+            byte type = ASCII_CLASS[c];
+            if (type != 0) {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                    inToken = true;
+                    tokenIsWord = true;
+                }
+                if (type != LETTER) {
+                    tokenIsWord = false;
+                }
+                afterCarriageReturn = false;
+            } else {
+                if (tokenStart >= 0) {
+                    if (tokenIsWord) {
+                        if (token.length() == 0) {
+                            listener.word(new String(array, tokenStart, i - tokenStart, StandardCharsets.ISO_8859_1),
+                                    currentLine);
+                        } else {
+                            appendAscii(array, tokenStart, i);
+                            listener.word(token.toString(), currentLine);
+                        }
+                    }
+                    token.setLength(0);
+                    inToken = false;
+                    tokenStart = -1;
+                }
+                processSeparator(c);
+                if (c == '\n') {
+                    listener.resumePoint(bufferOffset + i + 1, currentLine);
+                }
+            }
+        }
+
+        if (tokenStart >= 0) {
+            appendAscii(array, tokenStart, to);
+        }
+    }
+
+    /**
+     * Appends ASCII bytes to the token in progress.
+     *
+     * @param array : Bytes read from the file.
+     * @param from  : First byte to append.
+     * @param to    : End of bytes to append.
+     */
+    private void appendAscii(byte[] array, int from, int to) {
+        for (int i = from; i < to; i++) {
+            token.append((char) array[i]);
+        }
+    }
+
+    /**
+     * Decodes bytes and tokenizes the resulting characters.
+     *
+     * @param bytes      : Bytes to be decoded.
+     * @param chars      : Buffer to decode into.
+     * @param endOfInput : Whether no more bytes follow.
+     * @throws CharacterCodingException : If the decoder reports malformed or unmappable input.
+     */
+    private void decode(ByteBuffer bytes, CharBuffer chars, boolean endOfInput) throws CharacterCodingException {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            drain(chars);
+        } while (result.isOverflow());
+
+        /*
+        A decoder which reports errors stops at the bad input without consuming it, so reading on would
+        silently drop the rest of the file.
+         */
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    /**
+     * Tokenizes the characters held in the decode buffer and empties it.
+     *
+     * @param chars : Buffer of decoded characters.
+     */
+    private void drain(CharBuffer chars) {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (pendingHighSurrogate != 0) {
+                char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    processCodePoint(Character.toCodePoint(high, c));
+                    continue;
+                }
+                processCodePoint(high);
+            }
+            if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+            } else {
+                processCodePoint(c);
+            }
+        }
+        chars.clear();
+    }
+
+    /**
+     * Tokenizes a single decoded code point.
+     *
+     * @param codePoint : Code point read from the file.
+     */
+    private void processCodePoint(int codePoint) {
+        if (isTokenPart(codePoint)) {
+            if (!inToken) {
+                inToken = true;
+                tokenIsWord = true;
+            }
+            if (!isLetter(codePoint)) {
+                tokenIsWord = false;
+            }
+            token.appendCodePoint(codePoint);
+            afterCarriageReturn = false;
+        } else {
+            endToken();
+            processSeparator(codePoint);
+        }
+    }
+
+    /**
+     * Reports the token in progress if it is a word, and clears it.
+     */
+    private void endToken() {
+        if (inToken && tokenIsWord) {
+            listener.word(token.toString(), currentLine);
+        }
+        token.setLength(0);
+        inToken = false;
+    }
+
+    /**
+     * Advances the line number on line terminators, treating "\r\n" as a single terminator.
+     *
+     * @param codePoint : Separator code point.
+     */
+    private void processSeparator(int codePoint) {
+        if (codePoint == '\n') {
+            if (!afterCarriageReturn) {
+                currentLine++;
+            }
+            afterCarriageReturn = false;
+        } else if (codePoint == '\r') {
+            currentLine++;
+            afterCarriageReturn = true;
+        } else {
+            if (codePoint == 0x85 || codePoint == 0x2028 || codePoint == 0x2029) {
+                currentLine++;
+            }
+            afterCarriageReturn = false;
+        }
+    }
+}